@@ -0,0 +1,91 @@
+package com.example.streamsplunkwebhook.benchmark;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+/**
+ * Deterministic Stream chat webhook bodies used by the benchmarks.
+ * <ul>
+ *   <li>small: a bare typing.start event (~170 bytes)</li>
+ *   <li>typical: a message.new with user, channel and member details (~1.1 KB)</li>
+ *   <li>large: a message.new with a long text and many attachments (~100 KB)</li>
+ * </ul>
+ */
+public final class BenchmarkPayloads {
+
+    public static final String API_SECRET = "benchmark_stream_api_secret";
+    public static final String API_KEY = "y3m398snys6w";
+    public static final String WEBHOOK_ID = "bench-webhook-id-1755459745575_9572";
+
+    private BenchmarkPayloads() {
+    }
+
+    public static byte[] body(String size) {
+        switch (size) {
+            case "small":
+                return small().getBytes(StandardCharsets.UTF_8);
+            case "typical":
+                return typical("Hello from the benchmark! How is everyone doing today?", 0).getBytes(StandardCharsets.UTF_8);
+            case "large":
+                return large().getBytes(StandardCharsets.UTF_8);
+            default:
+                throw new IllegalArgumentException("Unknown payload size: " + size);
+        }
+    }
+
+    public static String sign(byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(API_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(body));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String small() {
+        return "{\"type\":\"typing.start\",\"cid\":\"messaging:general\",\"channel_id\":\"general\","
+                + "\"channel_type\":\"messaging\",\"user\":{\"id\":\"test_user_1\"},"
+                + "\"created_at\":\"2025-08-17T19:42:25.576116Z\"}";
+    }
+
+    private static String typical(String text, int attachments) {
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append("{\"type\":\"message.new\",\"cid\":\"messaging:general\",\"channel_id\":\"general\",")
+                .append("\"channel_type\":\"messaging\",\"message_id\":\"msg123\",")
+                .append("\"message\":{\"id\":\"msg123\",\"text\":\"").append(text).append("\",")
+                .append("\"html\":\"<p>").append(text).append("</p>\\n\",\"type\":\"regular\",")
+                .append("\"user\":{\"id\":\"test_user_1\",\"role\":\"user\",\"created_at\":\"2025-01-02T10:00:00Z\",")
+                .append("\"updated_at\":\"2025-08-17T19:00:00Z\",\"last_active\":\"2025-08-17T19:42:00Z\",")
+                .append("\"banned\":false,\"online\":true,\"name\":\"Test User\",\"image\":\"https://example.com/u/1.png\"},")
+                .append("\"attachments\":[");
+        for (int i = 0; i < attachments; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"type\":\"image\",\"image_url\":\"https://cdn.example.com/attachments/")
+                    .append(i).append("/photo.jpg\",\"thumb_url\":\"https://cdn.example.com/attachments/")
+                    .append(i).append("/thumb.jpg\",\"fallback\":\"photo-").append(i).append(".jpg\",")
+                    .append("\"original_width\":1920,\"original_height\":1080}");
+        }
+        sb.append("],\"latest_reactions\":[],\"own_reactions\":[],\"reaction_counts\":{},")
+                .append("\"reply_count\":0,\"created_at\":\"2025-08-17T19:42:25.576116Z\",")
+                .append("\"updated_at\":\"2025-08-17T19:42:25.576116Z\",\"shadowed\":false,")
+                .append("\"mentioned_users\":[],\"silent\":false,\"pinned\":false},")
+                .append("\"user\":{\"id\":\"test_user_1\",\"role\":\"user\",\"name\":\"Test User\",\"online\":true},")
+                .append("\"watcher_count\":3,\"total_unread_count\":1,\"unread_channels\":1,")
+                .append("\"members\":[{\"user_id\":\"test_user_1\",\"role\":\"owner\"},{\"user_id\":\"test_user_2\",\"role\":\"member\"}],")
+                .append("\"created_at\":\"2025-08-17T19:42:25.576116Z\",\"x_webhook_id\":\"").append(WEBHOOK_ID).append("\"}");
+        return sb.toString();
+    }
+
+    private static String large() {
+        StringBuilder text = new StringBuilder(30_000);
+        while (text.length() < 30_000) {
+            text.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ");
+        }
+        return typical(text.toString(), 200);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.streamsplunkwebhook.benchmark;
+
+import com.example.streamsplunkwebhook.util.JsonValidator;
+import com.example.streamsplunkwebhook.util.WebhookEnvelope;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envelope construction in WebhookController.receiveWebhook: JSON well-formedness check plus
+ * encoding of the queue envelope. The treeModel variant reproduces the previous ObjectNode
+ * based payload for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnvelopeBenchmark {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Param({"small", "typical", "large"})
+    public String payloadSize;
+
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        body = BenchmarkPayloads.body(payloadSize);
+    }
+
+    @Benchmark
+    public byte[] envelope() {
+        if (!JsonValidator.isWellFormed(body)) {
+            throw new IllegalStateException("Benchmark payload is not valid JSON");
+        }
+        return WebhookEnvelope.encode(System.currentTimeMillis(), BenchmarkPayloads.WEBHOOK_ID, BenchmarkPayloads.API_KEY, body);
+    }
+
+    @Benchmark
+    public String treeModel() throws Exception {
+        String rawBody = new String(body, StandardCharsets.UTF_8);
+        ObjectNode webhookData = objectMapper.createObjectNode();
+        webhookData.put("timestamp", System.currentTimeMillis() / 1000);
+        webhookData.put("x_webhook_id", BenchmarkPayloads.WEBHOOK_ID);
+        webhookData.put("x_api_key", BenchmarkPayloads.API_KEY);
+        webhookData.set("original_payload", objectMapper.readTree(rawBody));
+        return webhookData.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.streamsplunkwebhook.benchmark;
+
+import com.example.streamsplunkwebhook.service.HecBatch;
+import com.example.streamsplunkwebhook.service.HecEventWriter;
+import com.example.streamsplunkwebhook.service.Route;
+import com.example.streamsplunkwebhook.util.WebhookEnvelope;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HEC payload serialization in SplunkForwarderService: from a dequeued item to the bytes of the
+ * request body. Throughput is per event; the batched variant writes {@link #BATCH_SIZE} events
+ * into one body. The treeModel variant reproduces the previous readTree/ObjectNode path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HecSerializationBenchmark {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int BATCH_SIZE = 100;
+    private static final Route ROUTE = new Route("stream-webhook-forwarder-java", "stream-chat-webhook", "stream:chat:webhook", null);
+
+    @Param({"small", "typical", "large"})
+    public String payloadSize;
+
+    private byte[] envelope;
+    private String legacyQueueItem;
+
+    @Setup
+    public void setUp() throws Exception {
+        byte[] body = BenchmarkPayloads.body(payloadSize);
+        envelope = WebhookEnvelope.encode(System.currentTimeMillis(), BenchmarkPayloads.WEBHOOK_ID, BenchmarkPayloads.API_KEY, body);
+
+        ObjectNode legacy = objectMapper.createObjectNode();
+        legacy.put("timestamp", System.currentTimeMillis() / 1000);
+        legacy.put("x_webhook_id", BenchmarkPayloads.WEBHOOK_ID);
+        legacy.put("x_api_key", BenchmarkPayloads.API_KEY);
+        legacy.set("original_payload", objectMapper.readTree(new String(body, StandardCharsets.UTF_8)));
+        legacyQueueItem = legacy.toString();
+    }
+
+    @Benchmark
+    public byte[] splicedEvent() throws Exception {
+        return new HecEventWriter(WebhookEnvelope.decode(envelope), ROUTE).toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public byte[] splicedBatch() throws Exception {
+        HecBatch batch = new HecBatch(BATCH_SIZE, Long.MAX_VALUE, Long.MAX_VALUE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            WebhookEnvelope decoded = WebhookEnvelope.decode(envelope);
+            batch.add(decoded.getWebhookId(), null, 0, new HecEventWriter(decoded, ROUTE));
+        }
+        return batch.toRequestBody();
+    }
+
+    @Benchmark
+    public byte[] treeModel() throws Exception {
+        JsonNode webhookData = objectMapper.readTree(legacyQueueItem);
+        ObjectNode splunkPayload = objectMapper.createObjectNode();
+        splunkPayload.set("event", webhookData.path("original_payload"));
+        splunkPayload.put("time", webhookData.path("timestamp").asLong());
+        splunkPayload.put("host", "stream-webhook-forwarder-java");
+        splunkPayload.put("source", "stream-chat-webhook");
+        splunkPayload.put("sourcetype", "stream:chat:webhook");
+
+        ObjectNode fields = objectMapper.createObjectNode();
+        fields.put("x_webhook_id", webhookData.path("x_webhook_id").asText());
+        fields.put("x_api_key", webhookData.path("x_api_key").asText());
+        splunkPayload.set("fields", fields);
+        return splunkPayload.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.streamsplunkwebhook.benchmark;
+
+import com.example.streamsplunkwebhook.util.SignatureVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * X-Signature verification as done for every request on /webhook.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureVerifierBenchmark {
+
+    @Param({"small", "typical", "large"})
+    public String payloadSize;
+
+    private final SignatureVerifier signatureVerifier = new SignatureVerifier();
+    private byte[] body;
+    private String signature;
+
+    @Setup
+    public void setUp() {
+        body = BenchmarkPayloads.body(payloadSize);
+        signature = BenchmarkPayloads.sign(body);
+    }
+
+    @Benchmark
+    public boolean verifySignature() {
+        return signatureVerifier.verifySignature(body, signature, BenchmarkPayloads.API_SECRET);
+    }
+}
@@ -0,0 +1,497 @@
+package com.example.streamsplunkwebhook.loadtest;
+
+import com.example.streamsplunkwebhook.StreamSplunkWebhookApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives /webhook at a fixed rate and reports what the forwarder sustains. By default everything
+ * runs in this JVM: the application itself, an in-process {@link RedisStandIn} and one or more
+ * {@link StubHecServer}s. Requests are sent open-loop, so a slow service shows up as latency and
+ * backlog rather than as a lower offered rate; only when {@code --max-in-flight} requests are
+ * outstanding are sends skipped, and those are counted.
+ *
+ * Reported, per second and for the measurement window after warm-up:
+ * <ul>
+ *   <li>offered, accepted and delivered events per second;</li>
+ *   <li>ingest latency (request until /webhook answered) and end-to-end latency (request until
+ *       the stub HEC received the event), as percentiles;</li>
+ *   <li>backlog: events sent but neither refused nor delivered yet, and how fast it grows.</li>
+ * </ul>
+ *
+ * With {@code --hec-endpoints N} the application balances over N stubs, each with its own latency
+ * and faults: the stub flags take one value for all endpoints or a comma-separated value per
+ * endpoint, e.g. {@code --hec-endpoints 3 --hec-error-rate 0,0,1} to have one ejected.
+ * Requests and events are then also reported per endpoint.
+ *
+ * Run with {@code mvn -Ploadtest verify -Dloadtest.args="--rate 2000 --duration 60"}; see
+ * {@link Options} for all flags. Arguments starting with {@code --app.} or {@code --spring.} are
+ * passed on to the application, e.g. {@code --app.splunk.batch.max-events=200}. Application logs
+ * are limited to errors.
+ */
+public final class LoadTest {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Options options;
+    private final Map<String, Long> sentAtNanos = new ConcurrentHashMap<>();
+    private final Recorder ingestLatency = new Recorder(HIGHEST_MICROS, 3);
+    private final Recorder endToEndLatency = new Recorder(HIGHEST_MICROS, 3);
+    private final Histogram measuredIngest = new Histogram(HIGHEST_MICROS, 3);
+    private final Histogram measuredEndToEnd = new Histogram(HIGHEST_MICROS, 3);
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong redelivered = new AtomicLong();
+    private final List<Map<String, Object>> timeline = new ArrayList<>();
+
+    private LoadTest(Options options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        int exitCode = new LoadTest(options).run();
+        // Netty and the Spring context leave non-daemon threads behind
+        System.exit(exitCode);
+    }
+
+    private int run() throws Exception {
+        List<StubHecServer> stubs = new ArrayList<>();
+        for (StubHecServer.Behaviour behaviour : options.hecBehaviours()) {
+            stubs.add(new StubHecServer(behaviour, this::onDelivered));
+        }
+        RedisStandIn redisStandIn = options.redisHost == null ? new RedisStandIn() : null;
+        ConfigurableApplicationContext application = null;
+        try {
+            String appUrl = options.appUrl;
+            if (appUrl == null) {
+                application = startApplication(stubs, redisStandIn);
+                appUrl = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+            } else {
+                System.out.printf("Driving %s; point its app.splunk.hec-urls at %s%n", appUrl, eventUrls(stubs));
+            }
+            Map<String, Object> summary = drive(URI.create(appUrl + "/webhook"), stubs);
+            writeResult(summary);
+            return 0;
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+            for (StubHecServer stub : stubs) {
+                stub.close();
+            }
+            if (redisStandIn != null) {
+                redisStandIn.close();
+            }
+        }
+    }
+
+    private static String eventUrls(List<StubHecServer> stubs) {
+        List<String> urls = new ArrayList<>();
+        for (StubHecServer stub : stubs) {
+            urls.add(stub.getEventUrl());
+        }
+        return String.join(",", urls);
+    }
+
+    private ConfigurableApplicationContext startApplication(List<StubHecServer> stubs, RedisStandIn redisStandIn) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.redis.host", redisStandIn != null ? "localhost" : options.redisHost);
+        properties.put("spring.redis.port", String.valueOf(redisStandIn != null ? redisStandIn.getPort() : options.redisPort));
+        properties.put("spring.redis.database", "0");
+        properties.put("app.stream.api-secret", options.apiSecret);
+        properties.put("app.splunk.hec-url", stubs.get(0).getEventUrl());
+        // Several stubs go through the load balancer, with its ejection and health probing
+        properties.put("app.splunk.hec-urls", stubs.size() > 1 ? eventUrls(stubs) : "");
+        properties.put("app.splunk.hec-weights", stubs.size() > 1 && options.hecWeights != null ? options.hecWeights : "");
+        properties.put("app.splunk.hec-token", "load-test-token");
+        properties.put("app.splunk.ack.enabled", String.valueOf(options.hecAck));
+        properties.put("logging.level.com.example", "ERROR");
+        properties.put("logging.level.org.springframework.web.client.RestTemplate", "WARN");
+        properties.put("logging.level.org.springframework.http.client", "WARN");
+        properties.putAll(options.applicationProperties);
+
+        // As command-line arguments they take precedence over application.yml
+        List<String> args = new ArrayList<>();
+        properties.forEach((key, value) -> args.add("--" + key + "=" + value));
+        return new SpringApplicationBuilder(StreamSplunkWebhookApplication.class).run(args.toArray(new String[0]));
+    }
+
+    private void onDelivered(String webhookId) {
+        Long sentAt = sentAtNanos.remove(webhookId);
+        if (sentAt == null) {
+            // Sent again after a failed or timed-out HEC request that HEC had in fact taken
+            redelivered.incrementAndGet();
+            return;
+        }
+        delivered.incrementAndGet();
+        endToEndLatency.recordValue(Math.min(HIGHEST_MICROS, (System.nanoTime() - sentAt) / 1000));
+    }
+
+    private Map<String, Object> drive(URI webhookUri, List<StubHecServer> stubs) throws Exception {
+        SignedWebhookGenerator generator = new SignedWebhookGenerator(Long.toString(System.currentTimeMillis(), 36),
+                options.apiSecret, options.channels, options.payloadBytes);
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(clientExecutor)
+                .build();
+        Semaphore inFlight = new Semaphore(options.maxInFlight);
+
+        System.out.printf("Offering %d webhooks/s for %d s (%d s warm-up), ~%d-byte bodies over %d channels.%n",
+                options.rate, options.durationSeconds, options.warmupSeconds, options.payloadBytes, options.channels);
+        System.out.printf("%5s %9s %9s %9s %9s %10s %10s%n", "t(s)", "offered", "accepted", "delivered", "backlog", "ingest p99", "e2e p99");
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+        long[] previous = new long[3];
+        long backlogAtWarmup = -1;
+        long deliveredAtWarmup = 0;
+        long sentAtWarmup = 0;
+
+        while (System.nanoTime() < end) {
+            long due = (long) ((System.nanoTime() - start) / 1e9 * options.rate);
+            while (sent.get() + skipped.get() < due) {
+                if (!inFlight.tryAcquire()) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                send(client, webhookUri, generator.next(), inFlight);
+            }
+            long now = System.nanoTime();
+            if (now >= nextReport) {
+                int second = (int) Math.round((now - start) / 1e9);
+                boolean measuring = second > options.warmupSeconds;
+                report(second, previous, measuring);
+                if (second >= options.warmupSeconds && backlogAtWarmup < 0) {
+                    backlogAtWarmup = backlog();
+                    deliveredAtWarmup = delivered.get();
+                    sentAtWarmup = sent.get();
+                }
+                nextReport += TimeUnit.SECONDS.toNanos(1);
+            }
+            LockSupport.parkNanos(200_000);
+        }
+
+        long window = Math.max(1, options.durationSeconds - options.warmupSeconds);
+        long backlogAtEnd = backlog();
+        long deliveredInWindow = delivered.get() - deliveredAtWarmup;
+        long sentInWindow = sent.get() - sentAtWarmup;
+        if (backlogAtWarmup < 0) {
+            backlogAtWarmup = 0;
+        }
+
+        // Let the backlog drain so that what was accepted but never delivered can be told apart from what was slow
+        long drainStart = System.nanoTime();
+        long drainDeadline = drainStart + TimeUnit.SECONDS.toNanos(options.drainSeconds);
+        while ((inFlight.availablePermits() < options.maxInFlight || backlog() > 0) && System.nanoTime() < drainDeadline) {
+            Thread.sleep(100);
+        }
+        double drainSeconds = (System.nanoTime() - drainStart) / 1e9;
+        collectInterval(true);
+        clientExecutor.shutdownNow();
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("rate", options.rate);
+        summary.put("durationSeconds", options.durationSeconds);
+        summary.put("warmupSeconds", options.warmupSeconds);
+        summary.put("payloadBytes", options.payloadBytes);
+        summary.put("offeredPerSecond", sentInWindow / (double) window);
+        summary.put("sustainedDeliveredPerSecond", deliveredInWindow / (double) window);
+        summary.put("backlogGrowthPerSecond", (backlogAtEnd - backlogAtWarmup) / (double) window);
+        summary.put("backlogAtEnd", backlogAtEnd);
+        summary.put("drainSeconds", drainSeconds);
+        summary.put("undeliveredAfterDrain", backlog());
+        summary.put("sent", sent.get());
+        summary.put("skippedAtMaxInFlight", skipped.get());
+        summary.put("accepted", accepted.get());
+        summary.put("rejected", rejected.get());
+        summary.put("failed", failed.get());
+        summary.put("delivered", delivered.get());
+        summary.put("redelivered", redelivered.get());
+        long hecRequests = 0;
+        long hecInjectedFailures = 0;
+        List<Map<String, Object>> endpoints = new ArrayList<>();
+        for (StubHecServer stub : stubs) {
+            hecRequests += stub.getRequests();
+            hecInjectedFailures += stub.getInjectedFailures();
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("url", stub.getEventUrl());
+            endpoint.put("requests", stub.getRequests());
+            endpoint.put("events", stub.getEvents());
+            endpoint.put("injectedFailures", stub.getInjectedFailures());
+            endpoints.add(endpoint);
+        }
+        summary.put("hecRequests", hecRequests);
+        summary.put("hecInjectedFailures", hecInjectedFailures);
+        summary.put("hecEndpoints", endpoints);
+        summary.put("ingestLatencyMs", percentiles(measuredIngest));
+        summary.put("endToEndLatencyMs", percentiles(measuredEndToEnd));
+        summary.put("timeline", timeline);
+        printSummary(summary);
+        return summary;
+    }
+
+    private void send(HttpClient client, URI webhookUri, SignedWebhookGenerator.SignedWebhook webhook, Semaphore inFlight) {
+        long sentAt = System.nanoTime();
+        sentAtNanos.put(webhook.getWebhookId(), sentAt);
+        sent.incrementAndGet();
+        HttpRequest request = HttpRequest.newBuilder(webhookUri)
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .header("X-Signature", webhook.getSignature())
+                .header("X-Webhook-Id", webhook.getWebhookId())
+                .header("X-Api-Key", options.apiKey)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(webhook.getBody()))
+                .build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            inFlight.release();
+            ingestLatency.recordValue(Math.min(HIGHEST_MICROS, (System.nanoTime() - sentAt) / 1000));
+            if (error == null && response.statusCode() == 200) {
+                accepted.incrementAndGet();
+                return;
+            }
+            sentAtNanos.remove(webhook.getWebhookId());
+            if (error == null && response.statusCode() == 429) {
+                rejected.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+        });
+    }
+
+    // Sent and neither refused nor seen by the stub HEC yet, whether still queued or not yet answered
+    private long backlog() {
+        return sentAtNanos.size();
+    }
+
+    private void report(int second, long[] previous, boolean measuring) {
+        Histogram[] interval = collectInterval(measuring);
+        long offered = sent.get() + skipped.get();
+        long acceptedNow = accepted.get();
+        long deliveredNow = delivered.get();
+        long backlog = backlog();
+        double ingestP99 = interval[0].getValueAtPercentile(99) / 1000.0;
+        double endToEndP99 = interval[1].getValueAtPercentile(99) / 1000.0;
+        System.out.printf("%5d %9d %9d %9d %9d %8.1fms %8.1fms%n", second, offered - previous[0],
+                acceptedNow - previous[1], deliveredNow - previous[2], backlog, ingestP99, endToEndP99);
+
+        Map<String, Object> point = new LinkedHashMap<>();
+        point.put("second", second);
+        point.put("offered", offered - previous[0]);
+        point.put("accepted", acceptedNow - previous[1]);
+        point.put("delivered", deliveredNow - previous[2]);
+        point.put("backlog", backlog);
+        point.put("ingestP99Ms", ingestP99);
+        point.put("endToEndP99Ms", endToEndP99);
+        timeline.add(point);
+        previous[0] = offered;
+        previous[1] = acceptedNow;
+        previous[2] = deliveredNow;
+    }
+
+    private Histogram[] collectInterval(boolean measuring) {
+        Histogram ingest = ingestLatency.getIntervalHistogram();
+        Histogram endToEnd = endToEndLatency.getIntervalHistogram();
+        if (measuring) {
+            measuredIngest.add(ingest);
+            measuredEndToEnd.add(endToEnd);
+        }
+        return new Histogram[] {ingest, endToEnd};
+    }
+
+    private static Map<String, Object> percentiles(Histogram histogram) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", histogram.getTotalCount());
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            values.put("p" + (percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile)),
+                    histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        values.put("max", histogram.getMaxValue() / 1000.0);
+        return values;
+    }
+
+    private static void printSummary(Map<String, Object> summary) {
+        System.out.println();
+        System.out.printf("Offered:             %.1f webhooks/s%n", (Double) summary.get("offeredPerSecond"));
+        System.out.printf("Sustained delivery:  %.1f events/s%n", (Double) summary.get("sustainedDeliveredPerSecond"));
+        System.out.printf("Backlog growth:      %+.1f events/s (%d at end, drained in %.1f s, %d undelivered)%n",
+                (Double) summary.get("backlogGrowthPerSecond"), summary.get("backlogAtEnd"),
+                (Double) summary.get("drainSeconds"), summary.get("undeliveredAfterDrain"));
+        System.out.printf("Ingest latency:      %s%n", summary.get("ingestLatencyMs"));
+        System.out.printf("End-to-end latency:  %s%n", summary.get("endToEndLatencyMs"));
+        System.out.printf("Requests:            %d sent, %d accepted, %d rejected (429), %d failed, %d skipped at max in-flight%n",
+                summary.get("sent"), summary.get("accepted"), summary.get("rejected"), summary.get("failed"),
+                summary.get("skippedAtMaxInFlight"));
+        System.out.printf("HEC:                 %d requests, %d injected failures, %d events delivered twice%n",
+                summary.get("hecRequests"), summary.get("hecInjectedFailures"), summary.get("redelivered"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> endpoints = (List<Map<String, Object>>) summary.get("hecEndpoints");
+        if (endpoints.size() > 1) {
+            for (Map<String, Object> endpoint : endpoints) {
+                System.out.printf("  %-50s %d requests, %d events, %d injected failures%n", endpoint.get("url"),
+                        endpoint.get("requests"), endpoint.get("events"), endpoint.get("injectedFailures"));
+            }
+        }
+    }
+
+    private void writeResult(Map<String, Object> summary) throws Exception {
+        File file = new File(options.resultFile);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, summary);
+        System.out.println("Results written to " + file.getPath());
+    }
+
+    /**
+     * Command-line flags, each given as {@code --name value}.
+     */
+    static final class Options {
+        int rate = 1000;
+        int durationSeconds = 60;
+        int warmupSeconds = 10;
+        int drainSeconds = 30;
+        int maxInFlight = 512;
+        int payloadBytes = 1024;
+        int channels = 100;
+        String apiSecret = "load-test-secret";
+        String apiKey = "load-test-key";
+        String appUrl;
+        String redisHost;
+        int redisPort = 6379;
+        String resultFile = "target/loadtest-result.json";
+        int hecEndpoints = 1;
+        String hecWeights;
+        boolean hecAck;
+        // Stub flag -> one value, or one comma-separated value per endpoint
+        final Map<String, String> hecFlags = new LinkedHashMap<>();
+        final Map<String, String> applicationProperties = new LinkedHashMap<>();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.startsWith("--app.") || arg.startsWith("--spring.") || arg.startsWith("--logging.")) {
+                    int equals = arg.indexOf('=');
+                    if (equals < 0) {
+                        throw new IllegalArgumentException("Application properties take the form --name=value: " + arg);
+                    }
+                    options.applicationProperties.put(arg.substring(2, equals), arg.substring(equals + 1));
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--rate": options.rate = Integer.parseInt(value); break;
+                    case "--duration": options.durationSeconds = Integer.parseInt(value); break;
+                    case "--warmup": options.warmupSeconds = Integer.parseInt(value); break;
+                    case "--drain": options.drainSeconds = Integer.parseInt(value); break;
+                    case "--max-in-flight": options.maxInFlight = Integer.parseInt(value); break;
+                    case "--payload-bytes": options.payloadBytes = Integer.parseInt(value); break;
+                    case "--channels": options.channels = Integer.parseInt(value); break;
+                    case "--api-secret": options.apiSecret = value; break;
+                    case "--api-key": options.apiKey = value; break;
+                    case "--app-url": options.appUrl = value; break;
+                    case "--redis": {
+                        String[] hostPort = value.split(":");
+                        options.redisHost = hostPort[0];
+                        options.redisPort = hostPort.length > 1 ? Integer.parseInt(hostPort[1]) : 6379;
+                        break;
+                    }
+                    case "--result": options.resultFile = value; break;
+                    case "--hec-endpoints": options.hecEndpoints = Integer.parseInt(value); break;
+                    case "--hec-weights": options.hecWeights = value; break;
+                    case "--hec-ack": options.hecAck = Boolean.parseBoolean(value); break;
+                    case "--hec-latency-ms":
+                    case "--hec-jitter-ms":
+                    case "--hec-unavailable-rate":
+                    case "--hec-error-rate":
+                    case "--hec-hang-rate":
+                    case "--hec-hang-ms":
+                    case "--hec-ack-delay-ms":
+                        options.hecFlags.put(arg, value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (options.warmupSeconds >= options.durationSeconds) {
+                throw new IllegalArgumentException("--warmup must be shorter than --duration");
+            }
+            if (options.hecEndpoints < 1) {
+                throw new IllegalArgumentException("--hec-endpoints must be at least 1");
+            }
+            options.hecBehaviours();
+            return options;
+        }
+
+        /**
+         * One stub behaviour per HEC endpoint, from the stub flags.
+         */
+        List<StubHecServer.Behaviour> hecBehaviours() {
+            List<StubHecServer.Behaviour> behaviours = new ArrayList<>(hecEndpoints);
+            for (int i = 0; i < hecEndpoints; i++) {
+                StubHecServer.Behaviour behaviour = new StubHecServer.Behaviour();
+                behaviour.ack = hecAck;
+                for (Map.Entry<String, String> flag : hecFlags.entrySet()) {
+                    String value = valueForEndpoint(flag.getKey(), flag.getValue(), i);
+                    switch (flag.getKey()) {
+                        case "--hec-latency-ms": behaviour.latencyMs = Long.parseLong(value); break;
+                        case "--hec-jitter-ms": behaviour.jitterMs = Long.parseLong(value); break;
+                        case "--hec-unavailable-rate": behaviour.unavailableRate = Double.parseDouble(value); break;
+                        case "--hec-error-rate": behaviour.errorRate = Double.parseDouble(value); break;
+                        case "--hec-hang-rate": behaviour.hangRate = Double.parseDouble(value); break;
+                        case "--hec-hang-ms": behaviour.hangMs = Long.parseLong(value); break;
+                        default: behaviour.ackDelayMs = Long.parseLong(value); break;
+                    }
+                }
+                behaviours.add(behaviour);
+            }
+            return behaviours;
+        }
+
+        private String valueForEndpoint(String flag, String value, int endpoint) {
+            String[] values = value.split(",");
+            if (values.length == 1) {
+                return values[0].trim();
+            }
+            if (values.length != hecEndpoints) {
+                throw new IllegalArgumentException(flag + " needs one value or " + hecEndpoints + " comma-separated values");
+            }
+            return values[endpoint].trim();
+        }
+    }
+}
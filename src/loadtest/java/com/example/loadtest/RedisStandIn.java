@@ -0,0 +1,597 @@
+package com.example.streamsplunkwebhook.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * In-process Redis stand-in speaking RESP2 over a local socket, so that a load test needs no
+ * Redis server. It implements the commands the forwarder issues with the list queue backend:
+ * strings with expiry (SET NX/XX/EX/PX, GET, DEL, EXISTS), lists (RPUSH, LPUSH, LPOP with count,
+ * BLPOP, LLEN) and sorted sets (ZADD, ZREM, ZCARD, ZRANGE, ZRANGEBYSCORE, ZREMRANGEBYSCORE).
+ * Streams are not supported; run against a real Redis for the stream backend. Lua is not run
+ * either: EVAL and EVALSHA only emulate the deduplication claim scripts, told apart by the
+ * commands they call.
+ *
+ * All data sits behind one lock and each connection has its own thread. That is enough to
+ * compare forwarder changes against each other, but absolute numbers are not those of Redis.
+ */
+public final class RedisStandIn implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Map<String, Object> data = new HashMap<>();
+    private final Map<String, Long> expiresAtMillis = new HashMap<>();
+    private final Map<String, String> scriptsBySha = new HashMap<>();
+    private volatile boolean running = true;
+
+    public RedisStandIn() throws IOException {
+        this.serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "redis-stand-in-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Length of a list, e.g. the webhook queue; 0 if the key does not exist.
+     */
+    public synchronized long listLength(String key) {
+        Object value = live(key);
+        return value instanceof Deque ? ((Deque<?>) value).size() : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread connection = new Thread(() -> serve(socket), "redis-stand-in-connection");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Redis stand-in stopped accepting connections: " + e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             InputStream in = new BufferedInputStream(socket.getInputStream(), 65536);
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 65536)) {
+            while (running) {
+                List<String> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                execute(command, out);
+                // Pipelined commands are answered together once no more input is waiting
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    // Commands arrive as RESP arrays of bulk strings; values are kept as ISO-8859-1 strings, byte for byte
+    private static List<String> readCommand(InputStream in) throws IOException {
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        if (first != '*') {
+            throw new IOException("Expected a RESP array");
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<String> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected a RESP bulk string");
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length < length) {
+                throw new EOFException();
+            }
+            in.read();
+            in.read();
+            args.add(new String(bytes, StandardCharsets.ISO_8859_1));
+        }
+        return args;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException();
+            }
+            line.append((char) b);
+        }
+        in.read();
+        return line.toString();
+    }
+
+    private void execute(List<String> command, OutputStream out) throws IOException {
+        String name = command.get(0).toUpperCase(Locale.ROOT);
+        try {
+            if ("BLPOP".equals(name)) {
+                blockingPop(command, out);
+                return;
+            }
+            Object reply;
+            synchronized (this) {
+                reply = apply(name, command);
+            }
+            write(out, reply);
+        } catch (IllegalArgumentException e) {
+            write(out, new Error("ERR " + e.getMessage()));
+        }
+    }
+
+    private Object apply(String name, List<String> args) {
+        switch (name) {
+            case "PING":
+                return new Status("PONG");
+            case "SELECT":
+            case "CLIENT":
+                return new Status("OK");
+            case "INFO":
+                return "# Server\r\nredis_version:7.2.0\r\nredis_mode:standalone\r\n";
+            case "SET":
+                return set(args);
+            case "GET": {
+                Object value = live(args.get(1));
+                return value instanceof String ? value : null;
+            }
+            case "DEL": {
+                long removed = 0;
+                for (int i = 1; i < args.size(); i++) {
+                    removed += remove(args.get(i)) ? 1 : 0;
+                }
+                return removed;
+            }
+            case "EXISTS": {
+                long found = 0;
+                for (int i = 1; i < args.size(); i++) {
+                    found += live(args.get(i)) != null ? 1 : 0;
+                }
+                return found;
+            }
+            case "RPUSH":
+            case "LPUSH": {
+                Deque<String> list = list(args.get(1), true);
+                for (int i = 2; i < args.size(); i++) {
+                    if ("RPUSH".equals(name)) {
+                        list.addLast(args.get(i));
+                    } else {
+                        list.addFirst(args.get(i));
+                    }
+                }
+                notifyAll();
+                return (long) list.size();
+            }
+            case "LPOP":
+                return leftPop(args);
+            case "LLEN": {
+                Deque<String> list = list(args.get(1), false);
+                return list == null ? 0L : (long) list.size();
+            }
+            case "ZADD":
+                return zadd(args);
+            case "ZREM": {
+                SortedSet set = sortedSet(args.get(1), false);
+                long removed = 0;
+                for (int i = 2; set != null && i < args.size(); i++) {
+                    removed += set.remove(args.get(i)) ? 1 : 0;
+                }
+                dropIfEmpty(args.get(1), set);
+                return removed;
+            }
+            case "ZCARD": {
+                SortedSet set = sortedSet(args.get(1), false);
+                return set == null ? 0L : (long) set.scores.size();
+            }
+            case "ZRANGE":
+                return zrange(args);
+            case "ZRANGEBYSCORE":
+                return zrangeByScore(args);
+            case "ZREMRANGEBYSCORE": {
+                SortedSet set = sortedSet(args.get(1), false);
+                if (set == null) {
+                    return 0L;
+                }
+                List<String> members = set.byScore(parseBound(args.get(2)), parseBound(args.get(3)), 0, -1);
+                members.forEach(set::remove);
+                dropIfEmpty(args.get(1), set);
+                return (long) members.size();
+            }
+            case "EVAL":
+                scriptsBySha.put(sha1(args.get(1)), args.get(1));
+                return eval(args.get(1), args);
+            case "EVALSHA": {
+                String script = scriptsBySha.get(args.get(1).toLowerCase(Locale.ROOT));
+                return script == null ? new Error("NOSCRIPT No matching script. Please use EVAL.") : eval(script, args);
+            }
+            default:
+                return new Error("ERR unknown command '" + name + "' (not supported by the load-test Redis stand-in)");
+        }
+    }
+
+    private Object set(List<String> args) {
+        String key = args.get(1);
+        boolean ifAbsent = false;
+        boolean ifPresent = false;
+        long ttlMillis = -1;
+        for (int i = 3; i < args.size(); i++) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            switch (option) {
+                case "NX":
+                    ifAbsent = true;
+                    break;
+                case "XX":
+                    ifPresent = true;
+                    break;
+                case "EX":
+                    ttlMillis = Long.parseLong(args.get(++i)) * 1000;
+                    break;
+                case "PX":
+                    ttlMillis = Long.parseLong(args.get(++i));
+                    break;
+                case "KEEPTTL":
+                    break;
+                default:
+                    throw new IllegalArgumentException("syntax error");
+            }
+        }
+        boolean exists = live(key) != null;
+        if ((ifAbsent && exists) || (ifPresent && !exists)) {
+            return null;
+        }
+        data.put(key, args.get(2));
+        if (ttlMillis >= 0) {
+            expiresAtMillis.put(key, System.currentTimeMillis() + ttlMillis);
+        } else {
+            expiresAtMillis.remove(key);
+        }
+        return new Status("OK");
+    }
+
+    // EVAL script numkeys key token [ttlSeconds]
+    private Object eval(String script, List<String> args) {
+        if (!"1".equals(args.get(2)) || args.size() < 5) {
+            return new Error("ERR script not supported by the load-test Redis stand-in");
+        }
+        String key = args.get(3);
+        String token = args.get(4);
+        Object held = live(key);
+        if (script.contains("'DEL'")) {
+            // Compare-and-delete
+            return token.equals(held) && remove(key) ? 1L : 0L;
+        }
+        if (script.contains("'SET'") && args.size() == 6) {
+            // Claim or renew under the token; 0 if the ID was processed, -1 if another token holds it
+            if (held != null && !token.equals(held)) {
+                return "done".equals(held) ? 0L : -1L;
+            }
+            data.put(key, token);
+            expiresAtMillis.put(key, System.currentTimeMillis() + Long.parseLong(args.get(5)) * 1000);
+            return 1L;
+        }
+        return new Error("ERR script not supported by the load-test Redis stand-in");
+    }
+
+    private static String sha1(String script) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.ISO_8859_1)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Object leftPop(List<String> args) {
+        Deque<String> list = list(args.get(1), false);
+        if (args.size() < 3) {
+            String value = list == null ? null : list.pollFirst();
+            dropIfEmpty(args.get(1), list);
+            return value;
+        }
+        if (list == null) {
+            return NullArray.INSTANCE;
+        }
+        int count = Integer.parseInt(args.get(2));
+        List<String> values = new ArrayList<>(Math.min(count, list.size()));
+        while (values.size() < count && !list.isEmpty()) {
+            values.add(list.pollFirst());
+        }
+        dropIfEmpty(args.get(1), list);
+        return values;
+    }
+
+    // BLPOP key [key ...] timeout: waits on this stand-in's monitor, which every push notifies
+    private void blockingPop(List<String> args, OutputStream out) throws IOException {
+        double timeoutSeconds = Double.parseDouble(args.get(args.size() - 1));
+        long deadline = timeoutSeconds <= 0 ? Long.MAX_VALUE : System.currentTimeMillis() + (long) (timeoutSeconds * 1000);
+        Object reply = NullArray.INSTANCE;
+        out.flush();
+        synchronized (this) {
+            while (running) {
+                String popped = null;
+                String from = null;
+                for (int i = 1; i < args.size() - 1 && popped == null; i++) {
+                    Deque<String> list = list(args.get(i), false);
+                    if (list != null && !list.isEmpty()) {
+                        popped = list.pollFirst();
+                        from = args.get(i);
+                        dropIfEmpty(from, list);
+                    }
+                }
+                if (popped != null) {
+                    reply = List.of(from, popped);
+                    break;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    wait(Math.min(remaining, 1000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        write(out, reply);
+    }
+
+    private Object zadd(List<String> args) {
+        SortedSet set = sortedSet(args.get(1), true);
+        int i = 2;
+        boolean onlyNew = false;
+        boolean onlyExisting = false;
+        while (i < args.size()) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            if ("NX".equals(option)) {
+                onlyNew = true;
+            } else if ("XX".equals(option)) {
+                onlyExisting = true;
+            } else if (!"CH".equals(option)) {
+                break;
+            }
+            i++;
+        }
+        long added = 0;
+        for (; i + 1 < args.size(); i += 2) {
+            String member = args.get(i + 1);
+            boolean exists = set.scores.containsKey(member);
+            if ((onlyNew && exists) || (onlyExisting && !exists)) {
+                continue;
+            }
+            set.put(member, parseBound(args.get(i)));
+            added += exists ? 0 : 1;
+        }
+        dropIfEmpty(args.get(1), set);
+        return added;
+    }
+
+    private Object zrange(List<String> args) {
+        SortedSet set = sortedSet(args.get(1), false);
+        if (set == null) {
+            return List.of();
+        }
+        int size = set.scores.size();
+        int start = Integer.parseInt(args.get(2));
+        int stop = Integer.parseInt(args.get(3));
+        start = start < 0 ? Math.max(0, size + start) : start;
+        stop = stop < 0 ? size + stop : Math.min(stop, size - 1);
+        List<String> members = new ArrayList<>();
+        int index = 0;
+        for (Iterator<Map.Entry<String, Double>> it = set.ordered.iterator(); it.hasNext() && index <= stop; index++) {
+            Map.Entry<String, Double> entry = it.next();
+            if (index >= start) {
+                members.add(entry.getKey());
+            }
+        }
+        return members;
+    }
+
+    private Object zrangeByScore(List<String> args) {
+        SortedSet set = sortedSet(args.get(1), false);
+        if (set == null) {
+            return List.of();
+        }
+        int offset = 0;
+        int count = -1;
+        for (int i = 4; i < args.size(); i++) {
+            if ("LIMIT".equalsIgnoreCase(args.get(i))) {
+                offset = Integer.parseInt(args.get(i + 1));
+                count = Integer.parseInt(args.get(i + 2));
+                i += 2;
+            } else if (!"WITHSCORES".equalsIgnoreCase(args.get(i))) {
+                throw new IllegalArgumentException("syntax error");
+            }
+        }
+        return set.byScore(parseBound(args.get(2)), parseBound(args.get(3)), offset, count);
+    }
+
+    // Exclusive bounds ("(1.5") are treated as inclusive, which is close enough for the forwarder's use
+    private static double parseBound(String bound) {
+        String value = bound.startsWith("(") ? bound.substring(1) : bound;
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "-inf":
+                return Double.NEGATIVE_INFINITY;
+            case "+inf":
+            case "inf":
+                return Double.POSITIVE_INFINITY;
+            default:
+                return Double.parseDouble(value);
+        }
+    }
+
+    private Object live(String key) {
+        Long expiresAt = expiresAtMillis.get(key);
+        if (expiresAt != null && expiresAt <= System.currentTimeMillis()) {
+            remove(key);
+            return null;
+        }
+        return data.get(key);
+    }
+
+    private boolean remove(String key) {
+        expiresAtMillis.remove(key);
+        return data.remove(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Deque<String> list(String key, boolean create) {
+        Object value = live(key);
+        if (value == null && create) {
+            value = new ArrayDeque<String>();
+            data.put(key, value);
+        }
+        if (value != null && !(value instanceof Deque)) {
+            throw new IllegalArgumentException("WRONGTYPE Operation against a key holding the wrong kind of value");
+        }
+        return (Deque<String>) value;
+    }
+
+    private SortedSet sortedSet(String key, boolean create) {
+        Object value = live(key);
+        if (value == null && create) {
+            value = new SortedSet();
+            data.put(key, value);
+        }
+        if (value != null && !(value instanceof SortedSet)) {
+            throw new IllegalArgumentException("WRONGTYPE Operation against a key holding the wrong kind of value");
+        }
+        return (SortedSet) value;
+    }
+
+    // Redis deletes a list or sorted set once its last element is gone
+    private void dropIfEmpty(String key, Object value) {
+        if ((value instanceof Deque && ((Deque<?>) value).isEmpty())
+                || (value instanceof SortedSet && ((SortedSet) value).scores.isEmpty())) {
+            remove(key);
+        }
+    }
+
+    private static void write(OutputStream out, Object reply) throws IOException {
+        if (reply == null) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof NullArray) {
+            out.write("*-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Status) {
+            out.write(("+" + ((Status) reply).text + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Error) {
+            out.write(("-" + ((Error) reply).text + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Long) {
+            out.write((":" + reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof String) {
+            byte[] bytes = ((String) reply).getBytes(StandardCharsets.ISO_8859_1);
+            out.write(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(bytes);
+            out.write('\r');
+            out.write('\n');
+        } else if (reply instanceof List) {
+            List<?> items = (List<?>) reply;
+            out.write(("*" + items.size() + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (Object item : items) {
+                write(out, item);
+            }
+        } else {
+            throw new IllegalStateException("Unexpected reply type " + reply.getClass());
+        }
+    }
+
+    private static final class Status {
+        private final String text;
+
+        private Status(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class Error {
+        private final String text;
+
+        private Error(String text) {
+            this.text = text;
+        }
+    }
+
+    private enum NullArray { INSTANCE }
+
+    /**
+     * Members ordered by score, then by member, as in Redis.
+     */
+    private static final class SortedSet {
+        private final Map<String, Double> scores = new HashMap<>();
+        private final NavigableSet<Map.Entry<String, Double>> ordered = new TreeSet<>(
+                Comparator.<Map.Entry<String, Double>>comparingDouble(Map.Entry::getValue).thenComparing(Map.Entry::getKey));
+
+        private void put(String member, double score) {
+            remove(member);
+            scores.put(member, score);
+            ordered.add(Map.entry(member, score));
+        }
+
+        private boolean remove(String member) {
+            Double score = scores.remove(member);
+            if (score == null) {
+                return false;
+            }
+            ordered.remove(Map.entry(member, score));
+            return true;
+        }
+
+        private List<String> byScore(double min, double max, int offset, int count) {
+            List<String> members = new ArrayList<>();
+            int skipped = 0;
+            for (Map.Entry<String, Double> entry : ordered) {
+                if (entry.getValue() > max || (count >= 0 && members.size() == count)) {
+                    break;
+                }
+                if (entry.getValue() >= min && skipped++ >= offset) {
+                    members.add(entry.getKey());
+                }
+            }
+            return members;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.streamsplunkwebhook.loadtest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Produces Stream chat webhooks the way Stream sends them: a JSON body carrying its
+ * {@code x_webhook_id}, and an {@code X-Signature} that is the hex HMAC-SHA256 of the body
+ * under the API secret, as checked by SignatureVerifier. Events are a mix of message.new (70%),
+ * reaction.new (20%) and user.updated (10%) spread over a number of channels; message text is
+ * padded so that bodies come out at about the requested size.
+ */
+public final class SignedWebhookGenerator {
+
+    private final String runId;
+    private final String apiSecret;
+    private final int channels;
+    private final int targetBytes;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadLocal<Mac> mac;
+
+    public SignedWebhookGenerator(String runId, String apiSecret, int channels, int targetBytes) {
+        this.runId = runId;
+        this.apiSecret = apiSecret;
+        this.channels = Math.max(1, channels);
+        this.targetBytes = targetBytes;
+        this.mac = ThreadLocal.withInitial(this::newMac);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac keyed = Mac.getInstance("HmacSHA256");
+            keyed.init(new SecretKeySpec(apiSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return keyed;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public SignedWebhook next() {
+        long seq = sequence.getAndIncrement();
+        String webhookId = "lt-" + runId + "-" + seq;
+        String channelId = "load-" + (seq % channels);
+        int kind = ThreadLocalRandom.current().nextInt(10);
+        StringBuilder body = new StringBuilder(Math.max(256, targetBytes + 64));
+        if (kind < 7) {
+            body.append("{\"type\":\"message.new\",\"cid\":\"messaging:").append(channelId).append('"')
+                    .append(",\"channel\":{\"id\":\"").append(channelId).append("\",\"type\":\"messaging\"}")
+                    .append(",\"message\":{\"id\":\"msg-").append(seq).append("\",\"type\":\"regular\",\"text\":\"");
+            int padding = targetBytes - body.length() - 160;
+            for (int i = 0; i < padding; i++) {
+                body.append((char) ('a' + i % 26));
+            }
+            body.append("\",\"user\":{\"id\":\"user-").append(seq % 1000).append("\"}}");
+        } else if (kind < 9) {
+            body.append("{\"type\":\"reaction.new\",\"cid\":\"messaging:").append(channelId).append('"')
+                    .append(",\"channel\":{\"id\":\"").append(channelId).append("\",\"type\":\"messaging\"}")
+                    .append(",\"reaction\":{\"type\":\"like\",\"message_id\":\"msg-").append(seq - 1)
+                    .append("\",\"user_id\":\"user-").append(seq % 1000).append("\"}");
+        } else {
+            body.append("{\"type\":\"user.updated\",\"user\":{\"id\":\"user-").append(seq % 1000)
+                    .append("\",\"name\":\"Load Test User\",\"role\":\"user\"}");
+        }
+        body.append(",\"created_at\":\"").append(Instant.now()).append('"')
+                .append(",\"x_webhook_id\":\"").append(webhookId).append("\"}");
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        return new SignedWebhook(webhookId, bytes, HexFormat.of().formatHex(mac.get().doFinal(bytes)));
+    }
+
+    /**
+     * One webhook ready to be posted: its body and the headers Stream would send with it.
+     */
+    public static final class SignedWebhook {
+        private final String webhookId;
+        private final byte[] body;
+        private final String signature;
+
+        private SignedWebhook(String webhookId, byte[] body, String signature) {
+            this.webhookId = webhookId;
+            this.body = body;
+            this.signature = signature;
+        }
+
+        public String getWebhookId() {
+            return webhookId;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getSignature() {
+            return signature;
+        }
+    }
+}
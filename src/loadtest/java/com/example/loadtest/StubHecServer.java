@@ -0,0 +1,236 @@
+package com.example.streamsplunkwebhook.loadtest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A local stand-in for Splunk HEC. It accepts event batches on /services/collector/event
+ * (gzip or plain), answers /services/collector/health (503 while every request fails), and, with indexer acknowledgment on,
+ * hands out ackIds per channel and confirms them on /services/collector/ack once
+ * {@code ackDelayMs} has passed. Every request waits {@code latencyMs} plus up to
+ * {@code jitterMs}; a fraction of event requests can be failed with 503 or 500, or left
+ * hanging for {@code hangMs} so that the forwarder times out.
+ *
+ * Each event in an accepted batch is reported to the delivery listener with its webhook ID.
+ */
+public final class StubHecServer implements AutoCloseable {
+
+    /**
+     * Stub behaviour; fractions are between 0 and 1 and drawn independently per request.
+     */
+    public static final class Behaviour {
+        long latencyMs = 20;
+        long jitterMs = 10;
+        double unavailableRate;
+        double errorRate;
+        double hangRate;
+        long hangMs = 60_000;
+        boolean ack;
+        long ackDelayMs = 500;
+    }
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final byte[] SUCCESS = "{\"text\":\"Success\",\"code\":0}".getBytes(StandardCharsets.US_ASCII);
+
+    private final Behaviour behaviour;
+    private final Consumer<String> deliveryListener;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "stub-hec");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong injectedFailures = new AtomicLong();
+    private final Map<String, AtomicLong> nextAckIds = new ConcurrentHashMap<>();
+    // Channel -> ackId -> time after which the ackId is reported as indexed
+    private final Map<String, Map<Long, Long>> pendingAcks = new ConcurrentHashMap<>();
+
+    public StubHecServer(Behaviour behaviour, Consumer<String> deliveryListener) throws IOException {
+        this.behaviour = behaviour;
+        this.deliveryListener = deliveryListener;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 512);
+        server.createContext("/services/collector/event", this::handleEvents);
+        server.createContext("/services/collector/ack", this::handleAck);
+        server.createContext("/services/collector/health", this::handleHealth);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getEventUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/services/collector/event";
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getEvents() {
+        return events.get();
+    }
+
+    public long getInjectedFailures() {
+        return injectedFailures.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        byte[] body;
+        try (InputStream in = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))
+                ? new GZIPInputStream(exchange.getRequestBody())
+                : exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+        pause(behaviour.latencyMs + (behaviour.jitterMs > 0 ? ThreadLocalRandom.current().nextLong(behaviour.jitterMs + 1) : 0));
+
+        double draw = ThreadLocalRandom.current().nextDouble();
+        if (draw < behaviour.hangRate) {
+            injectedFailures.incrementAndGet();
+            pause(behaviour.hangMs);
+            respond(exchange, 503, "{\"text\":\"Server is busy\",\"code\":9}".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        draw -= behaviour.hangRate;
+        if (draw < behaviour.unavailableRate) {
+            injectedFailures.incrementAndGet();
+            respond(exchange, 503, "{\"text\":\"Server is busy\",\"code\":9}".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        draw -= behaviour.unavailableRate;
+        if (draw < behaviour.errorRate) {
+            injectedFailures.incrementAndGet();
+            respond(exchange, 500, "{\"text\":\"Internal server error\",\"code\":8}".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+
+        events.addAndGet(reportEvents(body));
+        String channel = channelOf(exchange);
+        if (behaviour.ack && channel != null) {
+            long ackId = nextAckIds.computeIfAbsent(channel, c -> new AtomicLong()).getAndIncrement();
+            pendingAcks.computeIfAbsent(channel, c -> new ConcurrentHashMap<>())
+                    .put(ackId, System.currentTimeMillis() + behaviour.ackDelayMs);
+            respond(exchange, 200, ("{\"text\":\"Success\",\"code\":0,\"ackId\":" + ackId + "}").getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        respond(exchange, 200, SUCCESS);
+    }
+
+    // An endpoint that fails every request also fails its health check, so the balancer keeps it ejected
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        if (behaviour.unavailableRate + behaviour.errorRate >= 1) {
+            respond(exchange, 503, "{\"text\":\"Server is busy\",\"code\":9}".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        respond(exchange, 200, SUCCESS);
+    }
+
+    // {"acks":[1,2]} -> {"acks":{"1":true,"2":false}}; a confirmed ackId is forgotten, as in HEC
+    private void handleAck(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody().readAllBytes());
+        Map<Long, Long> pending = pendingAcks.getOrDefault(channelOf(exchange), Map.of());
+        long now = System.currentTimeMillis();
+        ObjectNode response = objectMapper.createObjectNode();
+        ObjectNode acks = response.putObject("acks");
+        for (JsonNode ackId : request.path("acks")) {
+            Long indexedAt = pending.get(ackId.asLong());
+            boolean indexed = indexedAt != null && indexedAt <= now;
+            if (indexed) {
+                pending.remove(ackId.asLong());
+            }
+            acks.put(ackId.asText(), indexed);
+        }
+        respond(exchange, 200, objectMapper.writeValueAsBytes(response));
+    }
+
+    private static String channelOf(HttpExchange exchange) {
+        String channel = exchange.getRequestHeaders().getFirst("X-Splunk-Request-Channel");
+        if (channel == null && exchange.getRequestURI().getQuery() != null) {
+            for (String parameter : exchange.getRequestURI().getQuery().split("&")) {
+                if (parameter.startsWith("channel=")) {
+                    channel = parameter.substring("channel=".length());
+                }
+            }
+        }
+        return channel;
+    }
+
+    // A batch is HEC events back to back; only fields.x_webhook_id of each is read
+    private int reportEvents(byte[] body) throws IOException {
+        int count = 0;
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                count++;
+                String webhookId = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("fields".equals(name) && value == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            boolean match = "x_webhook_id".equals(parser.currentName());
+                            parser.nextToken();
+                            if (match) {
+                                webhookId = parser.getText();
+                            }
+                            parser.skipChildren();
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (webhookId != null) {
+                    deliveryListener.accept(webhookId);
+                }
+            }
+        }
+        return count;
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -12,6 +12,9 @@ import reactor.netty.resources.ConnectionProvider;
 
 import javax.net.ssl.SSLException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 // NEW/CORRECTED IMPORT for Spring's ReactorClientHttpConnector
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
@@ -20,12 +23,33 @@ import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 @Configuration
 public class AppConfig {
 
+    public static final String QUEUE_BACKEND_LIST = "list";
+    public static final String QUEUE_BACKEND_STREAM = "stream";
+
     @Value("${app.stream.api-secret}")
     private String streamApiSecret;
 
     @Value("${app.splunk.hec-url}")
     private String splunkHecUrl;
 
+    @Value("${app.splunk.hec-urls:}")
+    private String[] splunkHecUrls;
+
+    @Value("${app.splunk.hec-weights:}")
+    private String[] splunkHecWeights;
+
+    @Value("${app.splunk.load-balancing.strategy:least-outstanding}")
+    private String hecLoadBalancingStrategy;
+
+    @Value("${app.splunk.load-balancing.eject-after-failures:3}")
+    private int hecEjectAfterFailures;
+
+    @Value("${app.splunk.load-balancing.ejection-ms:30000}")
+    private long hecEjectionMs;
+
+    @Value("${app.splunk.load-balancing.probe-interval-ms:5000}")
+    private long hecProbeIntervalMs;
+
     @Value("${app.splunk.hec-token}")
     private String splunkHecToken;
 
@@ -35,12 +59,234 @@ public class AppConfig {
     @Value("${app.queue.name}")
     private String webhookQueueName;
 
+    @Value("${app.queue.backend:list}")
+    private String queueBackend;
+
+    @Value("${app.queue.stream.group:splunk-forwarders}")
+    private String queueStreamGroup;
+
+    @Value("${app.queue.stream.consumer-name:}")
+    private String queueStreamConsumerName;
+
+    @Value("${app.queue.stream.max-length:1000000}")
+    private long queueStreamMaxLength;
+
+    @Value("${app.queue.stream.claim-min-idle-ms:60000}")
+    private long queueStreamClaimMinIdleMs;
+
+    @Value("${app.queue.stream.claim-interval-ms:30000}")
+    private long queueStreamClaimIntervalMs;
+
+    @Value("${app.queue.shards:1}")
+    private int queueShards;
+
+    @Value("${app.queue.shard-key:}")
+    private String queueShardKey;
+
+    @Value("${app.queue.shard-rebalance-interval-ms:5000}")
+    private long queueShardRebalanceIntervalMs;
+
+    @Value("${app.queue.shard-member-ttl-ms:15000}")
+    private long queueShardMemberTtlMs;
+
+    @Value("${app.queue.compression.enabled:false}")
+    private boolean queueCompressionEnabled;
+
+    @Value("${app.queue.compression.level:1}")
+    private int queueCompressionLevel;
+
+    @Value("${app.queue.compression.min-bytes:2048}")
+    private int queueCompressionMinBytes;
+
+    @Value("${app.queue.enqueue-batch.max-size:64}")
+    private int enqueueBatchMaxSize;
+
+    @Value("${app.queue.enqueue-batch.window-ms:1}")
+    private long enqueueBatchWindowMs;
+
+    @Value("${app.queue.enqueue-batch.timeout-ms:5000}")
+    private long enqueueBatchTimeoutMs;
+
+    @Value("${app.retry.enabled:true}")
+    private boolean retryEnabled;
+
+    @Value("${app.retry.max-attempts:8}")
+    private int retryMaxAttempts;
+
+    @Value("${app.retry.initial-backoff-ms:1000}")
+    private long retryInitialBackoffMs;
+
+    @Value("${app.retry.max-backoff-ms:300000}")
+    private long retryMaxBackoffMs;
+
+    @Value("${app.retry.poll-interval-ms:1000}")
+    private long retryPollIntervalMs;
+
+    @Value("${app.retry.dlq-replay-rate-per-second:500}")
+    private int deadLetterReplayRatePerSecond;
+
+    @Value("${app.admission.enabled:true}")
+    private boolean admissionEnabled;
+
+    @Value("${app.admission.refresh-interval-ms:1000}")
+    private long admissionRefreshIntervalMs;
+
+    @Value("${app.admission.low-priority-depth:100000}")
+    private long admissionLowPriorityDepth;
+
+    @Value("${app.admission.high-depth:500000}")
+    private long admissionHighDepth;
+
+    @Value("${app.admission.low-priority-latency-ms:100}")
+    private long admissionLowPriorityLatencyMs;
+
+    @Value("${app.admission.high-latency-ms:1000}")
+    private long admissionHighLatencyMs;
+
+    @Value("${app.admission.low-priority-types:typing.start,typing.stop,user.watching.start,user.watching.stop}")
+    private String[] admissionLowPriorityTypes;
+
+    @Value("${app.admission.retry-after-seconds:30}")
+    private long admissionRetryAfterSeconds;
+
+    @Value("${app.ingest.mode:blocking}")
+    private String ingestMode;
+
+    @Value("${app.bulk.max-events:1000}")
+    private int bulkMaxEvents;
+
+    @Value("${app.bulk.max-event-bytes:1048576}")
+    private int bulkMaxEventBytes;
+
+    @Value("${app.bulk.max-bytes:16777216}")
+    private long bulkMaxBytes;
+
+    @Value("${app.bulk.id-field:x_webhook_id}")
+    private String bulkIdField;
+
+    @Value("${app.routing.rules-file:}")
+    private String routingRulesFile;
+
+    @Value("${app.routing.reload-interval-ms:10000}")
+    private long routingReloadIntervalMs;
+
+    @Value("${app.routing.default.host:stream-webhook-forwarder-java}")
+    private String routingDefaultHost;
+
+    @Value("${app.routing.default.source:stream-chat-webhook}")
+    private String routingDefaultSource;
+
+    @Value("${app.routing.default.sourcetype:stream:chat:webhook}")
+    private String routingDefaultSourcetype;
+
+    @Value("${app.routing.default.index:}")
+    private String routingDefaultIndex;
+
+    @Value("${app.logging.sample-every:1000}")
+    private long logSampleEvery;
+
+    @Value("${app.warmup.enabled:true}")
+    private boolean warmupEnabled;
+
+    @Value("${app.warmup.iterations:20000}")
+    private int warmupIterations;
+
+    @Value("${app.warmup.max-duration-ms:10000}")
+    private long warmupMaxDurationMs;
+
+    @Value("${app.admin.token:}")
+    private String adminToken;
+
+    @Value("${app.spill.enabled:false}")
+    private boolean spillEnabled;
+
+    @Value("${app.spill.directory:/tmp/webhook-spill}")
+    private String spillDirectory;
+
+    @Value("${app.spill.segment-bytes:67108864}")
+    private int spillSegmentBytes;
+
+    @Value("${app.spill.max-segments:16}")
+    private int spillMaxSegments;
+
+    @Value("${app.spill.latency-budget-ms:250}")
+    private long spillLatencyBudgetMs;
+
+    @Value("${app.spill.drain-interval-ms:1000}")
+    private long spillDrainIntervalMs;
+
     @Value("${app.worker.deduplication-window-seconds}")
     private long deduplicationWindowSeconds;
 
+    @Value("${app.worker.deduplication-in-flight-ttl-seconds:45}")
+    private long deduplicationInFlightTtlSeconds;
+
+    @Value("${app.worker.deduplication-local-cache-size:100000}")
+    private int deduplicationLocalCacheSize;
+
     @Value("${app.worker.poll-interval-ms}")
     private long pollIntervalMs;
 
+    @Value("${app.worker.consumers:16}")
+    private int workerConsumers;
+
+    @Value("${app.splunk.request-timeout-ms:30000}")
+    private long splunkRequestTimeoutMs;
+
+    @Value("${app.splunk.max-connections:500}")
+    private int splunkMaxConnections;
+
+    @Value("${app.splunk.pending-acquire-timeout-ms:5000}")
+    private long splunkPendingAcquireTimeoutMs;
+
+    @Value("${app.splunk.concurrency.initial-limit:4}")
+    private int hecConcurrencyInitialLimit;
+
+    @Value("${app.splunk.concurrency.min-limit:1}")
+    private int hecConcurrencyMinLimit;
+
+    @Value("${app.splunk.concurrency.latency-tolerance:2.0}")
+    private double hecConcurrencyLatencyTolerance;
+
+    @Value("${app.splunk.circuit-breaker.failure-threshold:5}")
+    private int hecCircuitBreakerFailureThreshold;
+
+    @Value("${app.splunk.circuit-breaker.open-duration-ms:30000}")
+    private long hecCircuitBreakerOpenDurationMs;
+
+    @Value("${app.splunk.compression.enabled:false}")
+    private boolean splunkCompressionEnabled;
+
+    @Value("${app.splunk.compression.level:6}")
+    private int splunkCompressionLevel;
+
+    @Value("${app.splunk.compression.min-bytes:1024}")
+    private int splunkCompressionMinBytes;
+
+    @Value("${app.splunk.ack.enabled:false}")
+    private boolean splunkAckEnabled;
+
+    @Value("${app.splunk.ack.channel:}")
+    private String splunkAckChannel;
+
+    @Value("${app.splunk.ack.poll-interval-ms:1000}")
+    private long splunkAckPollIntervalMs;
+
+    @Value("${app.splunk.ack.timeout-ms:120000}")
+    private long splunkAckTimeoutMs;
+
+    @Value("${app.splunk.ack.max-ids-per-poll:1000}")
+    private int splunkAckMaxIdsPerPoll;
+
+    @Value("${app.splunk.batch.max-events:100}")
+    private int hecBatchMaxEvents;
+
+    @Value("${app.splunk.batch.max-bytes:1048576}")
+    private long hecBatchMaxBytes;
+
+    @Value("${app.splunk.batch.max-linger-ms:200}")
+    private long hecBatchMaxLingerMs;
+
     public String getStreamApiSecret() {
         return streamApiSecret;
     }
@@ -49,6 +295,50 @@ public class AppConfig {
         return splunkHecUrl;
     }
 
+    /**
+     * HEC endpoints to spread requests across; just {@code hec-url} unless {@code hec-urls} is set.
+     */
+    public List<String> getSplunkHecUrls() {
+        List<String> urls = new ArrayList<>();
+        for (String url : splunkHecUrls) {
+            if (!url.isBlank()) {
+                urls.add(url.trim());
+            }
+        }
+        if (urls.isEmpty()) {
+            urls.add(splunkHecUrl);
+        }
+        return urls;
+    }
+
+    /**
+     * Weight of each endpoint, index-aligned with {@link #getSplunkHecUrls()}; 1 where not given.
+     */
+    public List<Integer> getSplunkHecWeights() {
+        List<Integer> weights = new ArrayList<>();
+        for (int i = 0; i < getSplunkHecUrls().size(); i++) {
+            String weight = i < splunkHecWeights.length ? splunkHecWeights[i].trim() : "";
+            weights.add(weight.isEmpty() ? 1 : Math.max(1, Integer.parseInt(weight)));
+        }
+        return weights;
+    }
+
+    public String getHecLoadBalancingStrategy() {
+        return hecLoadBalancingStrategy;
+    }
+
+    public int getHecEjectAfterFailures() {
+        return hecEjectAfterFailures;
+    }
+
+    public long getHecEjectionMs() {
+        return hecEjectionMs;
+    }
+
+    public long getHecProbeIntervalMs() {
+        return hecProbeIntervalMs;
+    }
+
     public String getSplunkHecToken() {
         return splunkHecToken;
     }
@@ -61,38 +351,321 @@ public class AppConfig {
         return webhookQueueName;
     }
 
+    public String getQueueBackend() {
+        return queueBackend;
+    }
+
+    public String getQueueStreamGroup() {
+        return queueStreamGroup;
+    }
+
+    public String getQueueStreamConsumerName() {
+        return queueStreamConsumerName;
+    }
+
+    public long getQueueStreamMaxLength() {
+        return queueStreamMaxLength;
+    }
+
+    public long getQueueStreamClaimMinIdleMs() {
+        return queueStreamClaimMinIdleMs;
+    }
+
+    public long getQueueStreamClaimIntervalMs() {
+        return queueStreamClaimIntervalMs;
+    }
+
+    public int getQueueShards() {
+        return queueShards;
+    }
+
+    public String getQueueShardKey() {
+        return queueShardKey;
+    }
+
+    public long getQueueShardRebalanceIntervalMs() {
+        return queueShardRebalanceIntervalMs;
+    }
+
+    public long getQueueShardMemberTtlMs() {
+        return queueShardMemberTtlMs;
+    }
+
+    public boolean isQueueCompressionEnabled() {
+        return queueCompressionEnabled;
+    }
+
+    public int getQueueCompressionLevel() {
+        return queueCompressionLevel;
+    }
+
+    public int getQueueCompressionMinBytes() {
+        return queueCompressionMinBytes;
+    }
+
+    public int getEnqueueBatchMaxSize() {
+        return enqueueBatchMaxSize;
+    }
+
+    public long getEnqueueBatchWindowMs() {
+        return enqueueBatchWindowMs;
+    }
+
+    public long getEnqueueBatchTimeoutMs() {
+        return enqueueBatchTimeoutMs;
+    }
+
+    public boolean isRetryEnabled() {
+        return retryEnabled;
+    }
+
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+
+    public long getRetryInitialBackoffMs() {
+        return retryInitialBackoffMs;
+    }
+
+    public long getRetryMaxBackoffMs() {
+        return retryMaxBackoffMs;
+    }
+
+    public long getRetryPollIntervalMs() {
+        return retryPollIntervalMs;
+    }
+
+    public int getDeadLetterReplayRatePerSecond() {
+        return deadLetterReplayRatePerSecond;
+    }
+
+    public boolean isAdmissionEnabled() {
+        return admissionEnabled;
+    }
+
+    public long getAdmissionRefreshIntervalMs() {
+        return admissionRefreshIntervalMs;
+    }
+
+    public long getAdmissionLowPriorityDepth() {
+        return admissionLowPriorityDepth;
+    }
+
+    public long getAdmissionHighDepth() {
+        return admissionHighDepth;
+    }
+
+    public long getAdmissionLowPriorityLatencyMs() {
+        return admissionLowPriorityLatencyMs;
+    }
+
+    public long getAdmissionHighLatencyMs() {
+        return admissionHighLatencyMs;
+    }
+
+    public List<String> getAdmissionLowPriorityTypes() {
+        return Arrays.asList(admissionLowPriorityTypes);
+    }
+
+    public long getAdmissionRetryAfterSeconds() {
+        return admissionRetryAfterSeconds;
+    }
+
+    public String getIngestMode() {
+        return ingestMode;
+    }
+
+    public int getBulkMaxEvents() {
+        return bulkMaxEvents;
+    }
+
+    public int getBulkMaxEventBytes() {
+        return bulkMaxEventBytes;
+    }
+
+    public long getBulkMaxBytes() {
+        return bulkMaxBytes;
+    }
+
+    public String getBulkIdField() {
+        return bulkIdField;
+    }
+
+    public String getRoutingRulesFile() {
+        return routingRulesFile;
+    }
+
+    public long getRoutingReloadIntervalMs() {
+        return routingReloadIntervalMs;
+    }
+
+    public String getRoutingDefaultHost() {
+        return routingDefaultHost;
+    }
+
+    public String getRoutingDefaultSource() {
+        return routingDefaultSource;
+    }
+
+    public String getRoutingDefaultSourcetype() {
+        return routingDefaultSourcetype;
+    }
+
+    /**
+     * Index for events no rule routes elsewhere; empty to leave it to the HEC token's default.
+     */
+    public String getRoutingDefaultIndex() {
+        return routingDefaultIndex;
+    }
+
+    public long getLogSampleEvery() {
+        return logSampleEvery;
+    }
+
+    public boolean isWarmupEnabled() {
+        return warmupEnabled;
+    }
+
+    public int getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    public long getWarmupMaxDurationMs() {
+        return warmupMaxDurationMs;
+    }
+
+    public String getAdminToken() {
+        return adminToken;
+    }
+
+    public boolean isSpillEnabled() {
+        return spillEnabled;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public int getSpillSegmentBytes() {
+        return spillSegmentBytes;
+    }
+
+    public int getSpillMaxSegments() {
+        return spillMaxSegments;
+    }
+
+    public long getSpillLatencyBudgetMs() {
+        return spillLatencyBudgetMs;
+    }
+
+    public long getSpillDrainIntervalMs() {
+        return spillDrainIntervalMs;
+    }
+
     public long getDeduplicationWindowSeconds() {
         return deduplicationWindowSeconds;
     }
 
+    public long getDeduplicationInFlightTtlSeconds() {
+        return deduplicationInFlightTtlSeconds;
+    }
+
+    public int getDeduplicationLocalCacheSize() {
+        return deduplicationLocalCacheSize;
+    }
+
     public long getPollIntervalMs() {
         return pollIntervalMs;
     }
 
+    public int getWorkerConsumers() {
+        return workerConsumers;
+    }
+
+    public long getSplunkRequestTimeoutMs() {
+        return splunkRequestTimeoutMs;
+    }
+
+    public int getHecConcurrencyInitialLimit() {
+        return hecConcurrencyInitialLimit;
+    }
+
+    public int getHecConcurrencyMinLimit() {
+        return hecConcurrencyMinLimit;
+    }
+
+    public double getHecConcurrencyLatencyTolerance() {
+        return hecConcurrencyLatencyTolerance;
+    }
+
+    public int getHecCircuitBreakerFailureThreshold() {
+        return hecCircuitBreakerFailureThreshold;
+    }
+
+    public long getHecCircuitBreakerOpenDurationMs() {
+        return hecCircuitBreakerOpenDurationMs;
+    }
+
+    public boolean isSplunkCompressionEnabled() {
+        return splunkCompressionEnabled;
+    }
+
+    public int getSplunkCompressionLevel() {
+        return splunkCompressionLevel;
+    }
+
+    public int getSplunkCompressionMinBytes() {
+        return splunkCompressionMinBytes;
+    }
+
+    public boolean isSplunkAckEnabled() {
+        return splunkAckEnabled;
+    }
+
+    public String getSplunkAckChannel() {
+        return splunkAckChannel;
+    }
+
+    public long getSplunkAckPollIntervalMs() {
+        return splunkAckPollIntervalMs;
+    }
+
+    public long getSplunkAckTimeoutMs() {
+        return splunkAckTimeoutMs;
+    }
+
+    public int getSplunkAckMaxIdsPerPoll() {
+        return splunkAckMaxIdsPerPoll;
+    }
+
+    public int getHecBatchMaxEvents() {
+        return hecBatchMaxEvents;
+    }
+
+    public long getHecBatchMaxBytes() {
+        return hecBatchMaxBytes;
+    }
+
+    public long getHecBatchMaxLingerMs() {
+        return hecBatchMaxLingerMs;
+    }
+
     @Bean
     public WebClient.Builder webClientBuilder() throws SSLException {
-        HttpClient httpClient;
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("splunk-hec-pool")
+                .maxConnections(splunkMaxConnections)
+                .maxIdleTime(Duration.ofSeconds(30))
+                .maxLifeTime(Duration.ofSeconds(60))
+                .pendingAcquireTimeout(Duration.ofMillis(splunkPendingAcquireTimeoutMs))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider);
 
         if (!splunkHecSslVerify) {
             io.netty.handler.ssl.SslContext sslContext = SslContextBuilder.forClient()
                     .sslProvider(SslProvider.JDK)
                     .trustManager(InsecureTrustManagerFactory.INSTANCE)
                     .build();
-
-            httpClient = HttpClient.create(ConnectionProvider.builder("splunk-hec-pool")
-                            .maxConnections(500)
-                            .maxIdleTime(Duration.ofSeconds(30))
-                            .maxLifeTime(Duration.ofSeconds(60))
-                            .pendingAcquireTimeout(Duration.ofSeconds(5))
-                            .build())
-                    .secure(sslContextSpec -> sslContextSpec.sslContext(sslContext));
-        } else {
-            httpClient = HttpClient.create(ConnectionProvider.builder("splunk-hec-pool")
-                            .maxConnections(500)
-                            .maxIdleTime(Duration.ofSeconds(30))
-                            .maxLifeTime(Duration.ofSeconds(60))
-                            .pendingAcquireTimeout(Duration.ofSeconds(5))
-                            .build());
+            httpClient = httpClient.secure(sslContextSpec -> sslContextSpec.sslContext(sslContext));
         }
 
         // This is the CORRECT line: use Spring's ReactorClientHttpConnector
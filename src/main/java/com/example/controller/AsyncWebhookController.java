@@ -0,0 +1,61 @@
+package com.example.streamsplunkwebhook.controller;
+
+import com.example.streamsplunkwebhook.service.EnqueueBatcher;
+import com.example.streamsplunkwebhook.util.WebhookEnvelope;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * /webhook in the async ingest mode ({@code app.ingest.mode: async}). The request thread only
+ * verifies and hands the webhook to the enqueue batcher; the servlet request is then suspended
+ * and completed when the Redis write carrying it finishes. Thousands of webhooks can wait for
+ * their write without holding a Tomcat thread each; {@code server.tomcat.max-connections} bounds
+ * how many are open at once.
+ */
+@RestController
+@ConditionalOnProperty(name = "app.ingest.mode", havingValue = "async")
+public class AsyncWebhookController {
+
+    private final WebhookIntake webhookIntake;
+    private final EnqueueBatcher enqueueBatcher;
+
+    public AsyncWebhookController(WebhookIntake webhookIntake, EnqueueBatcher enqueueBatcher) {
+        this.webhookIntake = webhookIntake;
+        this.enqueueBatcher = enqueueBatcher;
+    }
+
+    @PostMapping("/webhook")
+    public CompletableFuture<ResponseEntity<String>> receiveWebhook(
+            @RequestBody byte[] rawBody,
+            @RequestHeader("X-Signature") String xSignature,
+            @RequestHeader("X-Webhook-Id") String xWebhookId,
+            @RequestHeader("X-Api-Key") String xApiKey) {
+
+        ResponseEntity<String> rejection = webhookIntake.screen(rawBody, xSignature, xWebhookId);
+        if (rejection != null) {
+            return CompletableFuture.completedFuture(rejection);
+        }
+
+        byte[] envelope;
+        try {
+            envelope = WebhookEnvelope.encode(System.currentTimeMillis(), xWebhookId, xApiKey, rawBody);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(webhookIntake.failed(xWebhookId, e));
+        }
+        return enqueueBatcher.enqueueAsync(envelope).handle((ignored, failure) -> {
+            if (failure == null) {
+                return webhookIntake.accepted(xWebhookId);
+            }
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            return webhookIntake.failed(xWebhookId, cause);
+        });
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.example.streamsplunkwebhook.controller;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import com.example.streamsplunkwebhook.service.AdmissionControlService;
+import com.example.streamsplunkwebhook.service.DeduplicationService;
+import com.example.streamsplunkwebhook.service.EnqueueBatcher;
+import com.example.streamsplunkwebhook.util.JsonEventSplitter;
+import com.example.streamsplunkwebhook.util.JsonFields;
+import com.example.streamsplunkwebhook.util.JsonValidator;
+import com.example.streamsplunkwebhook.util.SignatureVerifier;
+import com.example.streamsplunkwebhook.util.WebhookEnvelope;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk ingest for relays that push many events per request, as NDJSON or as a JSON array. The
+ * body is read as a stream and split into events on the fly while its HMAC is computed; the
+ * X-Signature covers the whole raw body. Nothing is enqueued unless the signature matches, after
+ * which all admitted events go to Redis in a single write. The response lists a result per event,
+ * in body order.
+ */
+@RestController
+public class BulkWebhookController {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkWebhookController.class);
+
+    private final SignatureVerifier signatureVerifier;
+    private final EnqueueBatcher enqueueBatcher;
+    private final DeduplicationService deduplicationService;
+    private final AdmissionControlService admissionControlService;
+    private final AppConfig appConfig;
+
+    private final Timer readTimer;
+    private final DistributionSummary eventsPerRequest;
+    // Per-event outcomes count towards the same meter as single webhooks
+    private final ReceivedCounters received;
+
+    public BulkWebhookController(SignatureVerifier signatureVerifier, EnqueueBatcher enqueueBatcher,
+                                 DeduplicationService deduplicationService, AdmissionControlService admissionControlService,
+                                 ReceivedCounters received, MeterRegistry meterRegistry, AppConfig appConfig) {
+        this.signatureVerifier = signatureVerifier;
+        this.enqueueBatcher = enqueueBatcher;
+        this.deduplicationService = deduplicationService;
+        this.admissionControlService = admissionControlService;
+        this.appConfig = appConfig;
+        this.received = received;
+
+        this.readTimer = Timer.builder("webhook.bulk.read")
+                .description("Time to read, split and verify a bulk request body")
+                .register(meterRegistry);
+        this.eventsPerRequest = DistributionSummary.builder("webhook.bulk.events")
+                .description("Events per bulk request")
+                .register(meterRegistry);
+    }
+
+    @PostMapping("/webhook/bulk")
+    public ResponseEntity<Map<String, Object>> receiveBulk(
+            HttpServletRequest request,
+            @RequestHeader("X-Signature") String xSignature,
+            @RequestHeader("X-Api-Key") String xApiKey) {
+
+        // Turned away before reading a byte while everything is being shed
+        if (admissionControlService.isSheddingAll()) {
+            log.warn("Bulk request refused by admission control (level {}).", admissionControlService.getLevel());
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(appConfig.getAdmissionRetryAfterSeconds()));
+            return new ResponseEntity<>(error("Too Many Requests"), headers, HttpStatus.TOO_MANY_REQUESTS);
+        }
+
+        // A declared length over the limit is refused unread; an undeclared one is enforced while reading
+        if (request.getContentLengthLong() > appConfig.getBulkMaxBytes()) {
+            log.warn("Bulk request of {} bytes exceeds the limit of {} bytes. Request rejected.",
+                    request.getContentLengthLong(), appConfig.getBulkMaxBytes());
+            return new ResponseEntity<>(error("Body too large; the limit is " + appConfig.getBulkMaxBytes() + " bytes"),
+                    HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+
+        List<JsonEventSplitter.Event> events = new ArrayList<>();
+        long readStart = System.nanoTime();
+        try {
+            SignatureVerifier.VerifyingInputStream body =
+                    signatureVerifier.verifying(request.getInputStream(), appConfig.getStreamApiSecret());
+            JsonEventSplitter splitter = new JsonEventSplitter(body, appConfig.getBulkMaxEventBytes(), appConfig.getBulkMaxBytes());
+            JsonEventSplitter.Event event;
+            while ((event = splitter.next()) != null) {
+                if (events.size() == appConfig.getBulkMaxEvents()) {
+                    log.warn("Bulk request exceeds the limit of {} events. Request rejected.", appConfig.getBulkMaxEvents());
+                    return new ResponseEntity<>(error("Too many events; the limit is " + appConfig.getBulkMaxEvents()),
+                            HttpStatus.PAYLOAD_TOO_LARGE);
+                }
+                events.add(event);
+            }
+            if (!body.matches(xSignature)) {
+                log.warn("Invalid X-Signature for bulk request of {} events. Request rejected.", events.size());
+                return new ResponseEntity<>(error("Invalid X-Signature"), HttpStatus.FORBIDDEN);
+            }
+        } catch (JsonEventSplitter.BodyTooLargeException e) {
+            log.warn("Bulk request exceeds the limit of {} bytes. Request rejected.", appConfig.getBulkMaxBytes());
+            return new ResponseEntity<>(error("Body too large; the limit is " + appConfig.getBulkMaxBytes() + " bytes"),
+                    HttpStatus.PAYLOAD_TOO_LARGE);
+        } catch (IOException e) {
+            log.warn("Unreadable bulk request body: {}", e.getMessage());
+            return new ResponseEntity<>(error(e.getMessage()), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            log.error("Error reading bulk request: {}", e.getMessage(), e);
+            return new ResponseEntity<>(error("Internal Server Error"), HttpStatus.INTERNAL_SERVER_ERROR);
+        } finally {
+            readTimer.record(System.nanoTime() - readStart, TimeUnit.NANOSECONDS);
+        }
+        eventsPerRequest.record(events.size());
+
+        List<Map<String, Object>> results = new ArrayList<>(events.size());
+        List<byte[]> envelopes = new ArrayList<>(events.size());
+        List<String> admittedIds = new ArrayList<>(events.size());
+        List<Map<String, Object>> admittedResults = new ArrayList<>(events.size());
+        Set<String> idsInRequest = new HashSet<>();
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < events.size(); i++) {
+            byte[] rawBody = events.get(i).getBody();
+            String webhookId = rawBody == null ? null : JsonFields.topLevelString(rawBody, appConfig.getBulkIdField());
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", i);
+            result.put("id", webhookId);
+            results.add(result);
+
+            if (rawBody == null) {
+                received.malformed.increment();
+                result.put("status", "too_large");
+            } else if (!JsonValidator.isWellFormed(rawBody)) {
+                received.malformed.increment();
+                result.put("status", "malformed");
+            } else if (webhookId == null || webhookId.isEmpty()) {
+                received.malformed.increment();
+                result.put("status", "missing_id");
+            } else if (!idsInRequest.add(webhookId) || deduplicationService.isRecentlySeen(webhookId)) {
+                received.duplicate.increment();
+                result.put("status", "duplicate");
+            } else if (!admissionControlService.admit(rawBody)) {
+                received.shed.increment();
+                result.put("status", "shed");
+            } else {
+                envelopes.add(WebhookEnvelope.encode(now, webhookId, xApiKey, rawBody));
+                admittedIds.add(webhookId);
+                admittedResults.add(result);
+            }
+        }
+
+        HttpStatus status = HttpStatus.OK;
+        try {
+            // One Redis write for the whole request
+            enqueueBatcher.enqueueAll(envelopes);
+            for (int i = 0; i < admittedIds.size(); i++) {
+                deduplicationService.recordAccepted(admittedIds.get(i));
+                admittedResults.get(i).put("status", "accepted");
+            }
+            received.accepted.increment(admittedIds.size());
+            log.debug("Bulk request of {} events: {} enqueued.", events.size(), admittedIds.size());
+        } catch (Exception e) {
+            received.failed.increment(admittedIds.size());
+            log.error("Error enqueuing {} webhooks of a bulk request: {}", admittedIds.size(), e.getMessage(), e);
+            for (Map<String, Object> result : admittedResults) {
+                result.put("status", "error");
+            }
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("received", events.size());
+        response.put("accepted", status == HttpStatus.OK ? admittedIds.size() : 0);
+        response.put("results", results);
+        return new ResponseEntity<>(response, status);
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", message);
+        return body;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.streamsplunkwebhook.controller;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import com.example.streamsplunkwebhook.service.RetryQueueService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Operator endpoints for the retry set and dead-letter queue. Every call must carry the configured
+ * admin token in the X-Admin-Token header; with no token configured the endpoints are refused.
+ */
+@RestController
+@RequestMapping("/admin/dlq")
+public class DeadLetterController {
+
+    private static final Logger log = LoggerFactory.getLogger(DeadLetterController.class);
+
+    private final RetryQueueService retryQueueService;
+    private final AppConfig appConfig;
+
+    public DeadLetterController(RetryQueueService retryQueueService, AppConfig appConfig) {
+        this.retryQueueService = retryQueueService;
+        this.appConfig = appConfig;
+    }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> status(
+            @RequestHeader(value = "X-Admin-Token", required = false) String adminToken) {
+        if (!isAuthorized(adminToken)) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        return new ResponseEntity<>(snapshot(), HttpStatus.OK);
+    }
+
+    /**
+     * Replays dead letters into the main queue at the configured rate. Without {@code limit}
+     * everything currently in the dead-letter queue is replayed.
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<Map<String, Object>> replay(
+            @RequestHeader(value = "X-Admin-Token", required = false) String adminToken,
+            @RequestParam(value = "limit", required = false) Long limit) {
+        if (!isAuthorized(adminToken)) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        long count = limit != null ? limit : retryQueueService.getDeadLetterQueueSize();
+        if (count <= 0) {
+            return new ResponseEntity<>(snapshot(), HttpStatus.OK);
+        }
+        retryQueueService.startDeadLetterReplay(count);
+        return new ResponseEntity<>(snapshot(), HttpStatus.ACCEPTED);
+    }
+
+    @DeleteMapping("/replay")
+    public ResponseEntity<Map<String, Object>> cancelReplay(
+            @RequestHeader(value = "X-Admin-Token", required = false) String adminToken) {
+        if (!isAuthorized(adminToken)) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        retryQueueService.cancelDeadLetterReplay();
+        return new ResponseEntity<>(snapshot(), HttpStatus.OK);
+    }
+
+    private Map<String, Object> snapshot() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("retry_queue_size", retryQueueService.getRetryQueueSize());
+        status.put("dead_letter_queue_size", retryQueueService.getDeadLetterQueueSize());
+        status.put("replay_remaining", retryQueueService.getReplayRemaining());
+        status.put("replayed_total", retryQueueService.getReplayedTotal());
+        return status;
+    }
+
+    private boolean isAuthorized(String adminToken) {
+        String expected = appConfig.getAdminToken();
+        // Constant-time comparison, as for webhook signatures
+        boolean authorized = expected != null && !expected.isEmpty() && adminToken != null
+                && MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), adminToken.getBytes(StandardCharsets.UTF_8));
+        if (!authorized) {
+            log.warn("Rejected admin request without a valid X-Admin-Token.");
+        }
+        return authorized;
+    }
+}
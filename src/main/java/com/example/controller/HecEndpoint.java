@@ -0,0 +1,53 @@
+package com.example.streamsplunkwebhook.controller;
+
+import com.example.streamsplunkwebhook.service.AdaptiveConcurrencyLimiter;
+import com.example.streamsplunkwebhook.service.HecLoadBalancer;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint at /actuator/hec showing the adaptive HEC concurrency limit, the circuit
+ * breaker state and the health of each HEC endpoint.
+ */
+@Component
+@Endpoint(id = "hec")
+public class HecEndpoint {
+
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final HecLoadBalancer loadBalancer;
+
+    public HecEndpoint(AdaptiveConcurrencyLimiter concurrencyLimiter, HecLoadBalancer loadBalancer) {
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.loadBalancer = loadBalancer;
+    }
+
+    @ReadOperation
+    public Map<String, Object> flowControl() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("concurrency_limit", concurrencyLimiter.getLimit());
+        status.put("in_flight", concurrencyLimiter.getInFlight());
+        status.put("waiting", concurrencyLimiter.getWaiting());
+        status.put("baseline_latency_ms", concurrencyLimiter.getBaselineLatencyMillis());
+        status.put("circuit_breaker_state", concurrencyLimiter.getCircuitState().name());
+        status.put("consecutive_failures", concurrencyLimiter.getConsecutiveFailures());
+        status.put("load_balancing", loadBalancer.getStrategy().name());
+        List<Map<String, Object>> endpoints = new ArrayList<>();
+        for (HecLoadBalancer.Node node : loadBalancer.getNodes()) {
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("url", node.getBaseUrl());
+            endpoint.put("weight", node.getWeight());
+            endpoint.put("in_flight", node.getInFlight());
+            endpoint.put("ejected", node.isEjected());
+            endpoint.put("consecutive_failures", node.getConsecutiveFailures());
+            endpoints.add(endpoint);
+        }
+        status.put("endpoints", endpoints);
+        return status;
+    }
+}
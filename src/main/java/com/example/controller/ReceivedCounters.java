@@ -0,0 +1,36 @@
+package com.example.streamsplunkwebhook.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * The {@code webhook.received} counters, by result. Single webhooks and the events of a bulk
+ * request count towards the same meter, so it is registered here once for both endpoints.
+ */
+@Component
+class ReceivedCounters {
+
+    final Counter accepted;
+    final Counter invalidSignature;
+    final Counter duplicate;
+    final Counter shed;
+    final Counter malformed;
+    final Counter failed;
+
+    ReceivedCounters(MeterRegistry meterRegistry) {
+        this.accepted = receivedCounter(meterRegistry, "accepted");
+        this.invalidSignature = receivedCounter(meterRegistry, "invalid_signature");
+        this.duplicate = receivedCounter(meterRegistry, "duplicate");
+        this.shed = receivedCounter(meterRegistry, "shed");
+        this.malformed = receivedCounter(meterRegistry, "malformed");
+        this.failed = receivedCounter(meterRegistry, "error");
+    }
+
+    private static Counter receivedCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("webhook.received")
+                .description("Webhooks received on /webhook, and events received on /webhook/bulk, by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
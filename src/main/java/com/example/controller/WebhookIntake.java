@@ -0,0 +1,122 @@
+package com.example.streamsplunkwebhook.controller;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import com.example.streamsplunkwebhook.service.AdmissionControlService;
+import com.example.streamsplunkwebhook.service.DeduplicationService;
+import com.example.streamsplunkwebhook.util.JsonValidator;
+import com.example.streamsplunkwebhook.util.LogSampler;
+import com.example.streamsplunkwebhook.util.SignatureVerifier;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The checks and outcomes of a single webhook on /webhook, shared by the blocking
+ * {@link WebhookController} and the {@link AsyncWebhookController}; {@code app.ingest.mode}
+ * decides which of the two serves the endpoint.
+ */
+@Component
+public class WebhookIntake {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookIntake.class);
+
+    private final SignatureVerifier signatureVerifier;
+    private final DeduplicationService deduplicationService;
+    private final AdmissionControlService admissionControlService;
+    private final AppConfig appConfig;
+    private final LogSampler acceptedLogSampler;
+
+    private final Timer signatureTimer;
+    private final ReceivedCounters received;
+
+    public WebhookIntake(SignatureVerifier signatureVerifier, DeduplicationService deduplicationService,
+                         AdmissionControlService admissionControlService, ReceivedCounters received,
+                         MeterRegistry meterRegistry, AppConfig appConfig, Environment environment) {
+        this.signatureVerifier = signatureVerifier;
+        this.deduplicationService = deduplicationService;
+        this.admissionControlService = admissionControlService;
+        this.appConfig = appConfig;
+        this.acceptedLogSampler = new LogSampler(appConfig.getLogSampleEvery());
+
+        this.signatureTimer = Timer.builder("webhook.signature.verification")
+                .description("Time to verify the X-Signature HMAC")
+                .register(meterRegistry);
+        this.received = received;
+
+        boolean virtualThreads = Threading.VIRTUAL.isActive(environment);
+        if (!virtualThreads && environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            log.warn("spring.threads.virtual.enabled is set, but virtual threads need Java 21; requests run on platform threads.");
+        }
+        log.info("Webhook ingest mode: {}{}.", appConfig.getIngestMode(), virtualThreads ? " on virtual threads" : "");
+    }
+
+    /**
+     * Runs everything that comes before the enqueue: signature, duplicate check, admission
+     * control and JSON well-formedness.
+     * @return The response to send without enqueueing, or null if the webhook is to be enqueued.
+     */
+    public ResponseEntity<String> screen(byte[] rawBody, String xSignature, String xWebhookId) {
+        log.debug("Received webhook with ID: {}. Checking signature...", xWebhookId);
+
+        long verifyStart = System.nanoTime();
+        boolean signatureValid = signatureVerifier.verifySignature(rawBody, xSignature, appConfig.getStreamApiSecret());
+        signatureTimer.record(System.nanoTime() - verifyStart, TimeUnit.NANOSECONDS);
+        if (!signatureValid) {
+            received.invalidSignature.increment();
+            log.warn("Invalid X-Signature for webhook ID: {}. Request rejected.", xWebhookId);
+            return new ResponseEntity<>("Invalid X-Signature", HttpStatus.FORBIDDEN);
+        }
+
+        // A retry of a webhook this node already accepted is answered from memory without touching Redis
+        if (deduplicationService.isRecentlySeen(xWebhookId)) {
+            received.duplicate.increment();
+            log.debug("Webhook ID {} was already accepted. Skipping duplicate delivery.", xWebhookId);
+            return new ResponseEntity<>("OK", HttpStatus.OK);
+        }
+
+        // Shed load while the backlog in Redis is above the watermarks; Stream retries after Retry-After
+        if (!admissionControlService.admit(rawBody)) {
+            received.shed.increment();
+            log.warn("Webhook ID {} refused by admission control (level {}).", xWebhookId, admissionControlService.getLevel());
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(appConfig.getAdmissionRetryAfterSeconds()));
+            return new ResponseEntity<>("Too Many Requests", headers, HttpStatus.TOO_MANY_REQUESTS);
+        }
+
+        // The body is spliced verbatim into the HEC event later, so it must be well-formed JSON
+        if (!JsonValidator.isWellFormed(rawBody)) {
+            received.malformed.increment();
+            log.warn("Webhook ID {} has a malformed JSON body. Request rejected.", xWebhookId);
+            return new ResponseEntity<>("Malformed JSON body", HttpStatus.BAD_REQUEST);
+        }
+
+        log.debug("Signature verified for webhook ID: {}. Enqueuing for processing.", xWebhookId);
+        return null;
+    }
+
+    public ResponseEntity<String> accepted(String xWebhookId) {
+        deduplicationService.recordAccepted(xWebhookId);
+        received.accepted.increment();
+        if (acceptedLogSampler.sample()) {
+            log.info("Webhook ID {} successfully enqueued (logged for 1 in {} webhooks).", xWebhookId, acceptedLogSampler.getEvery());
+        } else {
+            log.debug("Webhook ID {} successfully enqueued.", xWebhookId);
+        }
+        return new ResponseEntity<>("OK", HttpStatus.OK);
+    }
+
+    public ResponseEntity<String> failed(String xWebhookId, Throwable e) {
+        received.failed.increment();
+        log.error("Error processing or enqueuing webhook ID {}: {}", xWebhookId, e.getMessage(), e);
+        return new ResponseEntity<>("Internal Server Error", HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+}
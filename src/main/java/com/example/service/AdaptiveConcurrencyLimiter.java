@@ -0,0 +1,231 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adaptive limit on concurrent HEC requests (AIMD), gated by a {@link CircuitBreaker}.
+ *
+ * Every success whose latency stays within {@code latencyTolerance} times the baseline (a slowly
+ * rising minimum of observed latencies) grows the limit by 1/limit, i.e. by about one request per
+ * round of requests. A slower success shrinks it by 10%. An overload signal (503 or 429 from HEC,
+ * or a request timeout) halves it, at most once per baseline latency so that one burst of
+ * rejections is not counted many times. The limit stays within [min-limit, number of lanes].
+ *
+ * Requests over the limit, or made while the circuit is open, wait without blocking a thread
+ * and are granted in arrival order.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Outcome {
+        /** HEC answered normally. */
+        SUCCESS,
+        /** HEC signalled overload: 503 / server busy, 429, or the request timed out. */
+        OVERLOAD,
+        /** HEC is unreachable or failed: other 5xx, connection errors. */
+        FAILURE,
+        /** HEC rejected the request itself (other 4xx); says nothing about its load. */
+        REJECTED,
+        /** The request was abandoned before an answer; nothing is learned. */
+        IGNORED
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+    private static final double DECREASE_ON_OVERLOAD = 0.5;
+    private static final double DECREASE_ON_LATENCY = 0.9;
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final CircuitBreaker circuitBreaker;
+
+    // All state below is guarded by this
+    private final ArrayDeque<MonoSink<Permit>> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double baselineLatencyNanos;
+    private long lastDecreaseNanos;
+    private boolean wakeUpScheduled;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry, AppConfig appConfig) {
+        this.maxLimit = Math.max(1, appConfig.getWorkerConsumers());
+        this.minLimit = Math.max(1, Math.min(maxLimit, appConfig.getHecConcurrencyMinLimit()));
+        this.limit = Math.max(minLimit, Math.min(maxLimit, appConfig.getHecConcurrencyInitialLimit()));
+        this.latencyTolerance = Math.max(1.0, appConfig.getHecConcurrencyLatencyTolerance());
+        this.lastDecreaseNanos = System.nanoTime();
+        this.circuitBreaker = new CircuitBreaker(appConfig.getHecCircuitBreakerFailureThreshold(),
+                appConfig.getHecCircuitBreakerOpenDurationMs());
+
+        Gauge.builder("hec.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit on concurrent HEC requests")
+                .register(meterRegistry);
+        Gauge.builder("hec.concurrency.in_flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("HEC requests currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("hec.concurrency.waiting", this, AdaptiveConcurrencyLimiter::getWaiting)
+                .description("HEC requests waiting for a permit")
+                .register(meterRegistry);
+        Gauge.builder("hec.circuit.state", this, l -> l.getCircuitState().ordinal())
+                .description("HEC circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Waits for a permit to send one request. The permit must be released exactly once with the
+     * outcome of the request; further releases are ignored.
+     */
+    public Mono<Permit> acquire() {
+        return Mono.create(sink -> {
+            synchronized (this) {
+                waiters.addLast(sink);
+            }
+            sink.onCancel(() -> {
+                synchronized (this) {
+                    waiters.remove(sink);
+                }
+            });
+            dispatch();
+        });
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    public synchronized CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return circuitBreaker.getConsecutiveFailures();
+    }
+
+    public synchronized long getBaselineLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis((long) baselineLatencyNanos);
+    }
+
+    private void release(Outcome outcome, long latencyNanos) {
+        synchronized (this) {
+            inFlight--;
+            switch (outcome) {
+                case SUCCESS:
+                    circuitBreaker.onSuccess();
+                    onSuccessLatency(latencyNanos);
+                    break;
+                case OVERLOAD:
+                    circuitBreaker.onFailure();
+                    decrease(DECREASE_ON_OVERLOAD, "overload");
+                    break;
+                case FAILURE:
+                    circuitBreaker.onFailure();
+                    break;
+                case REJECTED:
+                    // HEC is up and answering, which is all the breaker cares about
+                    circuitBreaker.onSuccess();
+                    break;
+                default:
+                    // Otherwise an abandoned half-open probe would keep the breaker from ever probing again
+                    circuitBreaker.onAbandoned();
+                    break;
+            }
+        }
+        dispatch();
+    }
+
+    private void onSuccessLatency(long latencyNanos) {
+        if (baselineLatencyNanos == 0 || latencyNanos < baselineLatencyNanos) {
+            baselineLatencyNanos = latencyNanos;
+        } else {
+            // Lets the baseline follow a lasting shift, e.g. after HEC moved to slower hardware
+            baselineLatencyNanos += (latencyNanos - baselineLatencyNanos) * BASELINE_DRIFT;
+        }
+        if (latencyNanos > baselineLatencyNanos * latencyTolerance) {
+            decrease(DECREASE_ON_LATENCY, "rising latency");
+        } else if (inFlight + 1 >= (int) limit) {
+            // Only grow while the current limit is actually being used
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    private void decrease(double factor, String reason) {
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos < baselineLatencyNanos) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        int before = (int) limit;
+        limit = Math.max(minLimit, limit * factor);
+        if ((int) limit != before) {
+            log.warn("Reduced HEC concurrency limit from {} to {} on {}.", before, (int) limit, reason);
+        }
+    }
+
+    // Grants permits to waiters in order while the limit and the circuit breaker allow
+    private void dispatch() {
+        List<MonoSink<Permit>> granted = new ArrayList<>();
+        long wakeUpMillis = 0;
+        synchronized (this) {
+            while (!waiters.isEmpty() && inFlight < (int) limit && circuitBreaker.tryAcquirePermission()) {
+                inFlight++;
+                granted.add(waiters.pollFirst());
+            }
+            if (!waiters.isEmpty() && circuitBreaker.getState() == CircuitBreaker.State.OPEN && !wakeUpScheduled) {
+                wakeUpScheduled = true;
+                wakeUpMillis = Math.max(1, circuitBreaker.remainingOpenMillis());
+            }
+        }
+        for (MonoSink<Permit> sink : granted) {
+            sink.success(new Permit());
+        }
+        if (wakeUpMillis > 0) {
+            // Nothing else will trigger a dispatch while the circuit is open and nothing is in flight
+            Schedulers.parallel().schedule(() -> {
+                synchronized (this) {
+                    wakeUpScheduled = false;
+                }
+                dispatch();
+            }, wakeUpMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Permission to send one request, timed from the moment it was granted.
+     */
+    public final class Permit {
+
+        private final long grantedAtNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        public void release(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimiter.this.release(outcome, System.nanoTime() - grantedAtNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import com.example.streamsplunkwebhook.util.JsonFields;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest admission control driven by the backlog in Redis. A background task refreshes the queue
+ * depth (main queue plus retry set) and the recent Redis write latency once per interval, and
+ * derives a load level from configurable watermarks. With the {@link SpillLog} enabled, slow or
+ * failing Redis writes are absorbed by the spill log, so write latency is left out and events
+ * waiting in the spill log count towards the depth instead:
+ *
+ * <ul>
+ *   <li>NORMAL: everything is admitted.</li>
+ *   <li>SHED_LOW_PRIORITY: events whose {@code type} is configured as low priority (typing
+ *       indicators and the like) are refused; only then is the body looked at.</li>
+ *   <li>SHED_ALL: every webhook is refused, so Stream retries it later.</li>
+ * </ul>
+ *
+ * Requests only read the current level, so admission costs nothing on the hot path.
+ */
+@Service
+public class AdmissionControlService {
+
+    public enum Level { NORMAL, SHED_LOW_PRIORITY, SHED_ALL }
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControlService.class);
+
+    private final RedisQueueService redisQueueService;
+    private final RetryQueueService retryQueueService;
+    private final EnqueueBatcher enqueueBatcher;
+    private final SpillLog spillLog;
+    private final boolean enabled;
+    private final long refreshIntervalMs;
+    private final long lowPriorityDepth;
+    private final long highDepth;
+    private final long lowPriorityLatencyMs;
+    private final long highLatencyMs;
+    private final Set<String> lowPriorityTypes;
+
+    private final Counter admitted;
+    private final Counter shedOverload;
+    private final Counter shedLowPriority;
+
+    private volatile Level level = Level.NORMAL;
+    private volatile long queueDepth;
+    private volatile long writeLatencyMs;
+    private ScheduledExecutorService refreshExecutor;
+
+    public AdmissionControlService(RedisQueueService redisQueueService, RetryQueueService retryQueueService,
+                                   EnqueueBatcher enqueueBatcher, SpillLog spillLog, MeterRegistry meterRegistry,
+                                   AppConfig appConfig) {
+        this.redisQueueService = redisQueueService;
+        this.retryQueueService = retryQueueService;
+        this.enqueueBatcher = enqueueBatcher;
+        this.spillLog = spillLog;
+        this.enabled = appConfig.isAdmissionEnabled();
+        this.refreshIntervalMs = Math.max(100, appConfig.getAdmissionRefreshIntervalMs());
+        this.lowPriorityDepth = appConfig.getAdmissionLowPriorityDepth();
+        this.highDepth = appConfig.getAdmissionHighDepth();
+        this.lowPriorityLatencyMs = appConfig.getAdmissionLowPriorityLatencyMs();
+        this.highLatencyMs = appConfig.getAdmissionHighLatencyMs();
+        this.lowPriorityTypes = new HashSet<>(appConfig.getAdmissionLowPriorityTypes());
+
+        this.admitted = Counter.builder("webhook.admission.admitted")
+                .description("Webhooks admitted for enqueueing")
+                .register(meterRegistry);
+        this.shedOverload = Counter.builder("webhook.admission.shed")
+                .description("Webhooks refused with 429 by admission control")
+                .tag("reason", "overload")
+                .register(meterRegistry);
+        this.shedLowPriority = Counter.builder("webhook.admission.shed")
+                .description("Webhooks refused with 429 by admission control")
+                .tag("reason", "low_priority")
+                .register(meterRegistry);
+        Gauge.builder("webhook.queue.depth", () -> queueDepth)
+                .description("Queue depth (main queue plus retry set, and the spill log when enabled) as of the last refresh")
+                .register(meterRegistry);
+        Gauge.builder("webhook.admission.level", () -> level.ordinal())
+                .description("Admission level: 0 normal, 1 shedding low priority, 2 shedding all")
+                .register(meterRegistry);
+    }
+
+    // The refresh also feeds the queue depth gauge, so it runs even with admission control disabled
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor();
+        refreshExecutor.scheduleWithFixedDelay(this::refresh, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        if (!enabled) {
+            log.info("Admission control disabled; queue depth is still refreshed for metrics.");
+            return;
+        }
+        log.info("Admission control started (low-priority shedding at depth {} or {} ms, full shedding at depth {} or {} ms).",
+                lowPriorityDepth, lowPriorityLatencyMs, highDepth, highLatencyMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Decides whether a webhook may be enqueued and counts the decision.
+     * @param rawBody The webhook body, only parsed while low-priority events are being shed.
+     */
+    public boolean admit(byte[] rawBody) {
+        Level current = enabled ? level : Level.NORMAL;
+        if (current == Level.SHED_ALL) {
+            shedOverload.increment();
+            return false;
+        }
+        if (current == Level.SHED_LOW_PRIORITY && !lowPriorityTypes.isEmpty()
+                && lowPriorityTypes.contains(JsonFields.topLevelString(rawBody, "type"))) {
+            shedLowPriority.increment();
+            return false;
+        }
+        admitted.increment();
+        return true;
+    }
+
+    /**
+     * True while every webhook is being refused, so bulk requests can be turned away unread.
+     */
+    public boolean isSheddingAll() {
+        return enabled && level == Level.SHED_ALL;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    private void refresh() {
+        try {
+            long depth = redisQueueService.getQueueDepth();
+            if (retryQueueService.isEnabled()) {
+                depth += retryQueueService.getRetryQueueSize();
+            }
+            long latency = enqueueBatcher.takeAverageWriteLatencyMillis();
+            if (spillLog.isEnabled()) {
+                // Slow writes spill instead of failing, which is what the spill log is for; shedding on
+                // them would refuse the traffic it absorbs. Its backlog still counts once it builds up
+                depth += spillLog.getPendingRecords();
+                latency = 0;
+            }
+            queueDepth = depth;
+            writeLatencyMs = latency;
+            if (!enabled) {
+                return;
+            }
+            updateLevel(depth >= highDepth || latency >= highLatencyMs ? Level.SHED_ALL
+                    : depth >= lowPriorityDepth || latency >= lowPriorityLatencyMs ? Level.SHED_LOW_PRIORITY
+                    : Level.NORMAL);
+        } catch (Exception e) {
+            // Without a view of Redis the last known level stays in force
+            log.warn("Could not refresh queue depth for admission control: {}", e.getMessage());
+        }
+    }
+
+    private void updateLevel(Level next) {
+        Level previous = level;
+        if (next != previous) {
+            level = next;
+            log.warn("Admission level changed from {} to {} (queue depth {}, write latency {} ms).",
+                    previous, next, queueDepth, writeLatencyMs);
+        }
+    }
+}
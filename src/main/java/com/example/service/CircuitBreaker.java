@@ -0,0 +1,107 @@
+package com.example.streamsplunkwebhook.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consecutive-failure circuit breaker for HEC requests. After {@code failureThreshold} failures
+ * in a row the circuit opens and no request is let through for the open duration. It then goes
+ * half-open and lets a single probe through: success closes the circuit, failure opens it again.
+ * A probe abandoned without an answer frees the slot for the next probe.
+ *
+ * Not thread-safe on its own; {@link AdaptiveConcurrencyLimiter} calls it under its lock.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final int failureThreshold;
+    private final long openDurationNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openDurationMs) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, openDurationMs));
+    }
+
+    /**
+     * Asks to send one request.
+     * @return true if the request may go ahead; it must then be reported through
+     *         {@link #onSuccess()}, {@link #onFailure()} or {@link #onAbandoned()}.
+     */
+    public boolean tryAcquirePermission() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openDurationNanos) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+            log.info("Splunk HEC circuit breaker half-open; sending a probe request.");
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public void onSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            probeInFlight = false;
+            log.info("Splunk HEC circuit breaker closed; HEC is healthy again.");
+        }
+    }
+
+    public void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+            probeInFlight = false;
+            log.error("Splunk HEC circuit breaker opened after {} consecutive failures; pausing requests for {} ms.",
+                    consecutiveFailures, TimeUnit.NANOSECONDS.toMillis(openDurationNanos));
+        }
+    }
+
+    /**
+     * A permitted request ended without an answer, e.g. it was cancelled. Nothing is learned about
+     * HEC, but a half-open circuit must be able to send another probe.
+     */
+    public void onAbandoned() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * Time until an open circuit lets a probe through, or 0 if it is not open.
+     */
+    public long remainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openDurationNanos - (System.nanoTime() - openedAtNanos)));
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import com.example.streamsplunkwebhook.util.BoundedTtlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-ID webhook deduplication. Each webhook ID is a Redis key of its own, claimed atomically with
+ * a short in-flight TTL before the event is forwarded. Once HEC has accepted the event the key is
+ * rewritten with the full deduplication window; if delivery fails the claim is released so a
+ * redelivery can go through. Every call takes a list of IDs and is pipelined into a single
+ * round-trip.
+ *
+ * A claim holds the token of its owner, so that a consumer whose claim has expired and been taken
+ * over cannot extend or release the new owner's claim, nor the processed marker written once the
+ * event was delivered. Extending and releasing compare the token in a Lua script.
+ *
+ * A bounded local cache sits in front of Redis: IDs this node has accepted or delivered recently
+ * are answered from memory, so hot retries from Stream never reach Redis.
+ */
+@Service
+public class DeduplicationService {
+
+    private static final Logger log = LoggerFactory.getLogger(DeduplicationService.class);
+    private static final String IN_FLIGHT = "pending:";
+    private static final String PROCESSED = "done";
+    // Takes the claim if the ID is free, or renews it if the token already holds it: 1 if held afterwards,
+    // 0 if the ID was processed, -1 if another token holds it
+    private static final RedisScript<Long> CLAIM = RedisScript.of(
+            "local held = redis.call('GET', KEYS[1]) "
+                    + "if held == false or held == ARGV[1] then redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2]) return 1 end "
+                    + "if held == '" + PROCESSED + "' then return 0 end return -1", Long.class);
+    // Deletes the claim only while the token still holds it
+    private static final RedisScript<Long> RELEASE = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final String keyPrefix;
+    private final long deduplicationWindowSeconds;
+    private final long inFlightTtlSeconds;
+    private final String ownerId = UUID.randomUUID().toString();
+    private final AtomicLong claimSequence = new AtomicLong();
+    // Value is true once the ID has been delivered, false if it has only been accepted at ingest
+    private final BoundedTtlCache<String, Boolean> nearCache;
+
+    private final Counter ingestHits;
+    private final Counter ingestMisses;
+    private final Counter forwardHits;
+    private final Counter forwardMisses;
+
+    public DeduplicationService(RedisTemplate<String, String> redisTemplate, MeterRegistry meterRegistry,
+                                AppConfig appConfig) {
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = "processed_webhook:" + appConfig.getWebhookQueueName() + ":";
+        this.deduplicationWindowSeconds = appConfig.getDeduplicationWindowSeconds();
+        this.inFlightTtlSeconds = appConfig.getDeduplicationInFlightTtlSeconds();
+        this.nearCache = new BoundedTtlCache<>(appConfig.getDeduplicationLocalCacheSize(),
+                deduplicationWindowSeconds, TimeUnit.SECONDS);
+        this.ingestHits = lookupCounter(meterRegistry, "ingest", "hit");
+        this.ingestMisses = lookupCounter(meterRegistry, "ingest", "miss");
+        this.forwardHits = lookupCounter(meterRegistry, "forward", "hit");
+        this.forwardMisses = lookupCounter(meterRegistry, "forward", "miss");
+    }
+
+    // Hit rate per stage is hit / (hit + miss)
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String stage, String result) {
+        return Counter.builder("webhook.deduplication")
+                .description("Deduplication lookups; a hit is a duplicate that was dropped")
+                .tag("stage", stage)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Local-only check used on the ingest path: true if this node has already accepted or
+     * delivered the ID within the deduplication window.
+     */
+    public boolean isRecentlySeen(String webhookId) {
+        boolean seen = nearCache.get(webhookId) != null;
+        (seen ? ingestHits : ingestMisses).increment();
+        return seen;
+    }
+
+    public void recordAccepted(String webhookId) {
+        nearCache.put(webhookId, Boolean.FALSE);
+    }
+
+    /**
+     * A token no other claim holds, for {@link #tryClaim(List, String)}.
+     */
+    public String newClaimToken() {
+        return IN_FLIGHT + ownerId + ":" + claimSequence.incrementAndGet();
+    }
+
+    /**
+     * Atomically claims each ID for delivery under the given token.
+     * @return A list index-aligned with {@code webhookIds}: {@link Claim#CLAIMED} if the event should
+     *         be forwarded, {@link Claim#PROCESSED} if it was delivered already, {@link Claim#HELD}
+     *         if another claim is delivering it (including an earlier repeat in the same list).
+     */
+    public List<Claim> tryClaim(List<String> webhookIds, String claimToken) {
+        List<Claim> claims = new ArrayList<>(webhookIds.size());
+        List<String> remoteIds = new ArrayList<>(webhookIds.size());
+        List<Integer> remoteIndexes = new ArrayList<>(webhookIds.size());
+        Set<String> idsInList = new HashSet<>();
+        for (int i = 0; i < webhookIds.size(); i++) {
+            String webhookId = webhookIds.get(i);
+            if (Boolean.TRUE.equals(nearCache.get(webhookId))) {
+                claims.add(Claim.PROCESSED);
+            } else if (!idsInList.add(webhookId)) {
+                // The same token would renew rather than lose the claim in Redis
+                claims.add(Claim.HELD);
+            } else {
+                claims.add(null);
+                remoteIds.add(webhookId);
+                remoteIndexes.add(i);
+            }
+        }
+        int won = 0;
+        if (!remoteIds.isEmpty()) {
+            List<Claim> remoteClaims = claim(remoteIds, Collections.nCopies(remoteIds.size(), claimToken), inFlightTtlSeconds);
+            for (int i = 0; i < remoteIndexes.size(); i++) {
+                claims.set(remoteIndexes.get(i), remoteClaims.get(i));
+                if (remoteClaims.get(i) == Claim.CLAIMED) {
+                    won++;
+                }
+            }
+        }
+        forwardMisses.increment(won);
+        forwardHits.increment(webhookIds.size() - won);
+        return claims;
+    }
+
+    /**
+     * Renews in-flight claims for another in-flight TTL just before the events are sent, since
+     * they may have waited for longer than that. A claim that expired is taken again if the ID is
+     * still free.
+     * @param claimTokens The token each ID was claimed under, index-aligned with {@code webhookIds}.
+     * @return Whether each claim is still held, index-aligned with {@code webhookIds}.
+     */
+    public List<Claim> renewClaims(List<String> webhookIds, List<String> claimTokens) {
+        return webhookIds.isEmpty() ? Collections.emptyList() : claim(webhookIds, claimTokens, inFlightTtlSeconds);
+    }
+
+    /**
+     * Marks delivered IDs as processed for the full deduplication window.
+     */
+    public void markProcessed(List<String> webhookIds) {
+        if (webhookIds.isEmpty()) {
+            return;
+        }
+        byte[] processed = PROCESSED.getBytes(StandardCharsets.UTF_8);
+        Expiration window = Expiration.seconds(deduplicationWindowSeconds);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String webhookId : webhookIds) {
+                connection.stringCommands().set(rawKey(webhookId), processed, window, SetOption.upsert());
+            }
+            return null;
+        });
+        for (String webhookId : webhookIds) {
+            nearCache.put(webhookId, Boolean.TRUE);
+        }
+        log.debug("Marked {} webhook IDs as processed for deduplication.", webhookIds.size());
+    }
+
+    /**
+     * Keeps in-flight claims alive for longer than the default TTL, e.g. while waiting for HEC to
+     * confirm indexing. A claim that expired is taken again if the ID is still free; claims now
+     * held by another token and processed markers are left alone.
+     * @param claimTokens The token each ID was claimed under, index-aligned with {@code webhookIds}.
+     */
+    public void extendClaims(List<String> webhookIds, List<String> claimTokens, long ttlSeconds) {
+        if (webhookIds.isEmpty()) {
+            return;
+        }
+        claim(webhookIds, claimTokens, Math.max(inFlightTtlSeconds, ttlSeconds));
+    }
+
+    private List<Claim> claim(List<String> webhookIds, List<String> claimTokens, long ttlSeconds) {
+        List<Object> results = runScript(CLAIM, webhookIds, claimTokens, String.valueOf(ttlSeconds).getBytes(StandardCharsets.UTF_8));
+        List<Claim> claims = new ArrayList<>(results.size());
+        for (Object result : results) {
+            long held = result instanceof Long ? (Long) result : -1;
+            claims.add(held > 0 ? Claim.CLAIMED : held == 0 ? Claim.PROCESSED : Claim.HELD);
+        }
+        return claims;
+    }
+
+    /**
+     * Drops in-flight claims for IDs whose delivery failed so they can be claimed again. Only
+     * claims still held under the given tokens are dropped.
+     * @param claimTokens The token each ID was claimed under, index-aligned with {@code webhookIds}.
+     */
+    public void release(List<String> webhookIds, List<String> claimTokens) {
+        if (webhookIds.isEmpty()) {
+            return;
+        }
+        runScript(RELEASE, webhookIds, claimTokens, null);
+        for (String webhookId : webhookIds) {
+            // Another copy of the event may have been delivered meanwhile; that is still worth remembering
+            if (!Boolean.TRUE.equals(nearCache.get(webhookId))) {
+                nearCache.remove(webhookId);
+            }
+        }
+    }
+
+    /**
+     * Runs a script once per ID, with the ID's key, its claim token and {@code extraArg} if given,
+     * pipelined by SHA. If Redis does not have the script cached (after a restart or SCRIPT FLUSH)
+     * the round-trip is repeated with the script body; both scripts are safe to run twice.
+     */
+    private List<Object> runScript(RedisScript<Long> script, List<String> webhookIds, List<String> claimTokens, byte[] extraArg) {
+        try {
+            return pipelineScript(script, webhookIds, claimTokens, extraArg, true);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            return pipelineScript(script, webhookIds, claimTokens, extraArg, false);
+        }
+    }
+
+    private List<Object> pipelineScript(RedisScript<Long> script, List<String> webhookIds, List<String> claimTokens,
+                                        byte[] extraArg, boolean bySha) {
+        byte[] body = script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < webhookIds.size(); i++) {
+                byte[] key = rawKey(webhookIds.get(i));
+                byte[] token = claimTokens.get(i).getBytes(StandardCharsets.UTF_8);
+                byte[][] keyAndArgs = extraArg == null ? new byte[][] {key, token} : new byte[][] {key, token, extraArg};
+                if (bySha) {
+                    connection.scriptingCommands().evalSha(script.getSha1(), ReturnType.INTEGER, 1, keyAndArgs);
+                } else {
+                    connection.scriptingCommands().eval(body, ReturnType.INTEGER, 1, keyAndArgs);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] rawKey(String webhookId) {
+        return (keyPrefix + webhookId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The state of an ID's claim after claiming or renewing it.
+     */
+    public enum Claim {
+        // Held by the caller's token; the event is to be sent
+        CLAIMED,
+        // Delivered already, within the deduplication window
+        PROCESSED,
+        // Held by another token, whose owner is delivering the event
+        HELD
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ingest-side micro-batcher. Webhooks arriving concurrently on request threads are coalesced by
+ * a single writer thread into one Redis write (multi-value RPUSH per shard or pipelined XADD), flushed once
+ * the batch reaches its max size or its time window passes. Each caller blocks until the write
+ * containing its item has completed, so a 200 is only returned for items that are in Redis, or,
+ * when the {@link SpillLog} is enabled, in the local spill log because the write failed or took
+ * longer than the latency budget.
+ */
+@Service
+public class EnqueueBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(EnqueueBatcher.class);
+
+    private final RedisQueueService redisQueueService;
+    private final SpillLog spillLog;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final long timeoutMs;
+    private final long latencyBudgetMs;
+    private final LinkedBlockingQueue<PendingEnqueue> pending = new LinkedBlockingQueue<>();
+    // Redis write latency since the last call to takeAverageWriteLatencyMillis
+    private final AtomicLong writeLatencyNanos = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final Timer writeSuccessTimer;
+    private final Timer writeFailureTimer;
+    private final DistributionSummary batchSizeSummary;
+
+    private ExecutorService writerExecutor;
+    private volatile boolean running = true;
+
+    public EnqueueBatcher(RedisQueueService redisQueueService, SpillLog spillLog, MeterRegistry meterRegistry,
+                          AppConfig appConfig) {
+        this.redisQueueService = redisQueueService;
+        this.spillLog = spillLog;
+        this.maxBatchSize = Math.max(1, appConfig.getEnqueueBatchMaxSize());
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, appConfig.getEnqueueBatchWindowMs()));
+        this.timeoutMs = appConfig.getEnqueueBatchTimeoutMs();
+        this.latencyBudgetMs = Math.min(timeoutMs, appConfig.getSpillLatencyBudgetMs());
+        this.writeSuccessTimer = writeTimer(meterRegistry, "success");
+        this.writeFailureTimer = writeTimer(meterRegistry, "failure");
+        this.batchSizeSummary = DistributionSummary.builder("webhook.queue.enqueue.batch.size")
+                .description("Webhooks per Redis enqueue write")
+                .register(meterRegistry);
+    }
+
+    private static Timer writeTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("webhook.queue.enqueue")
+                .description("Latency of batched Redis enqueue writes")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        writerExecutor = Executors.newSingleThreadExecutor();
+        writerExecutor.submit(this::writeLoop);
+        log.info("Enqueue batcher started (max batch size {}, window {} ms).", maxBatchSize, TimeUnit.NANOSECONDS.toMillis(windowNanos));
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        writerExecutor.shutdown();
+        try {
+            if (!writerExecutor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+                writerExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writerExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        failPending(new IllegalStateException("Enqueue batcher is shutting down"));
+    }
+
+    /**
+     * Queues a payload for the next batch write and waits for that write to complete. With the
+     * spill log enabled, a write that fails or exceeds the latency budget is appended to the spill
+     * log instead, and so is every payload arriving while spilled ones are still being replayed.
+     * @throws Exception if the payload could be stored neither in Redis nor in the spill log.
+     */
+    public void enqueue(byte[] webhookPayload) throws Exception {
+        if (!running) {
+            throw new IllegalStateException("Enqueue batcher is shutting down");
+        }
+        // Encoding (optional compression) happens here on the request thread, not on the single writer
+        byte[] encoded = redisQueueService.encodePayload(webhookPayload);
+        int shard = redisQueueService.shardOf(webhookPayload);
+        if (spillLog.isEnabled() && spillLog.hasPending()) {
+            // Keeps arrival order: this item must reach the queue after those spilled before it
+            spillLog.append(encoded);
+            return;
+        }
+
+        PendingEnqueue entry = new PendingEnqueue(encoded, shard);
+        pending.add(entry);
+        try {
+            entry.result.get(spillLog.isEnabled() ? latencyBudgetMs : timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            onWriteFailed(e.getCause() instanceof Exception ? (Exception) e.getCause() : e, encoded);
+        } catch (TimeoutException e) {
+            onWriteTimedOut(entry);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #enqueue(byte[])} for the async ingest mode. The returned
+     * future completes once the payload is in Redis or the spill log, and fails if it could be
+     * stored in neither; the caller's thread is free in the meantime. Spilling after a failed or
+     * late write runs on the writer thread or the timeout thread, which is cheap as the spill log
+     * is memory-mapped.
+     */
+    public CompletableFuture<Void> enqueueAsync(byte[] webhookPayload) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Enqueue batcher is shutting down"));
+        }
+        byte[] encoded = redisQueueService.encodePayload(webhookPayload);
+        int shard = redisQueueService.shardOf(webhookPayload);
+        if (spillLog.isEnabled() && spillLog.hasPending()) {
+            try {
+                spillLog.append(encoded);
+                return CompletableFuture.completedFuture(null);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        PendingEnqueue entry = new PendingEnqueue(encoded, shard);
+        CompletableFuture<Void> stored = new CompletableFuture<>();
+        entry.result.orTimeout(spillLog.isEnabled() ? latencyBudgetMs : timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((ignored, failure) -> {
+                    try {
+                        if (failure instanceof TimeoutException) {
+                            onWriteTimedOut(entry);
+                        } else if (failure != null) {
+                            onWriteFailed(failure instanceof Exception ? (Exception) failure : new ExecutionException(failure), encoded);
+                        }
+                        stored.complete(null);
+                    } catch (Exception e) {
+                        stored.completeExceptionally(e);
+                    }
+                });
+        pending.add(entry);
+        return stored;
+    }
+
+    private void onWriteFailed(Exception cause, byte[] encoded) throws Exception {
+        if (!spillLog.isEnabled()) {
+            throw cause;
+        }
+        log.warn("Redis write failed ({}); spilling webhook to the local log.", cause.getMessage());
+        spillLog.append(encoded);
+    }
+
+    private void onWriteTimedOut(PendingEnqueue entry) throws Exception {
+        if (!spillLog.isEnabled()) {
+            throw new TimeoutException("Timed out after " + timeoutMs + " ms waiting for the Redis batch write");
+        }
+        if (!entry.withdraw()) {
+            // The writer already took it, so it may reach Redis as well; the forwarder's deduplication drops the copy
+            log.debug("Spilling a webhook that is already part of an in-flight Redis write.");
+        }
+        log.warn("Redis write exceeded the {} ms latency budget; spilling webhook to the local log.", latencyBudgetMs);
+        spillLog.append(entry.payload);
+    }
+
+    /**
+     * Writes payloads that arrived together, e.g. from one bulk request, in one Redis write of
+     * their own instead of through the coalescing writer. Spilling works as for
+     * {@link #enqueue(byte[])}, except that the latency budget cannot cut the write short.
+     * @throws Exception if the payloads could be stored neither in Redis nor in the spill log.
+     */
+    public void enqueueAll(List<byte[]> webhookPayloads) throws Exception {
+        if (!running) {
+            throw new IllegalStateException("Enqueue batcher is shutting down");
+        }
+        if (webhookPayloads.isEmpty()) {
+            return;
+        }
+        List<byte[]> encoded = new ArrayList<>(webhookPayloads.size());
+        int[] shards = new int[webhookPayloads.size()];
+        for (int i = 0; i < shards.length; i++) {
+            encoded.add(redisQueueService.encodePayload(webhookPayloads.get(i)));
+            shards[i] = redisQueueService.shardOf(webhookPayloads.get(i));
+        }
+        if (spillLog.isEnabled() && spillLog.hasPending()) {
+            spillAll(encoded);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            redisQueueService.enqueueEncodedWebhooks(encoded, shards);
+            recordWrite(System.nanoTime() - start, encoded.size(), true);
+        } catch (Exception e) {
+            recordWrite(System.nanoTime() - start, encoded.size(), false);
+            if (!spillLog.isEnabled()) {
+                throw e;
+            }
+            log.warn("Redis write of {} webhooks failed ({}); spilling them to the local log.", encoded.size(), e.getMessage());
+            spillAll(encoded);
+        }
+    }
+
+    private void spillAll(List<byte[]> encoded) throws IOException {
+        for (byte[] payload : encoded) {
+            spillLog.append(payload);
+        }
+    }
+
+    /**
+     * Average duration of the batch writes completed since the previous call, which starts a new
+     * measurement window. Returns 0 if nothing was written in the window.
+     */
+    public long takeAverageWriteLatencyMillis() {
+        long count = writeCount.getAndSet(0);
+        long nanos = writeLatencyNanos.getAndSet(0);
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos / count);
+    }
+
+    private void writeLoop() {
+        List<PendingEnqueue> batch = new ArrayList<>(maxBatchSize);
+        while (running || !pending.isEmpty()) {
+            try {
+                PendingEnqueue first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Takes whatever is already waiting, then keeps collecting until the batch is full or the
+     * window opened by the first item has passed.
+     */
+    private void collect(List<PendingEnqueue> batch) throws InterruptedException {
+        pending.drainTo(batch, maxBatchSize - batch.size());
+        long deadline = System.nanoTime() + windowNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PendingEnqueue next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            pending.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+
+    private void write(List<PendingEnqueue> batch) {
+        // Items whose callers already gave up and spilled them are left out
+        batch.removeIf(entry -> !entry.take());
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<byte[]> payloads = new ArrayList<>(batch.size());
+        int[] shards = new int[batch.size()];
+        for (int i = 0; i < shards.length; i++) {
+            payloads.add(batch.get(i).payload);
+            shards[i] = batch.get(i).shard;
+        }
+        long start = System.nanoTime();
+        try {
+            redisQueueService.enqueueEncodedWebhooks(payloads, shards);
+            recordWrite(System.nanoTime() - start, batch.size(), true);
+            for (PendingEnqueue entry : batch) {
+                entry.result.complete(null);
+            }
+            log.debug("Wrote batch of {} webhooks to Redis.", batch.size());
+        } catch (Exception e) {
+            recordWrite(System.nanoTime() - start, batch.size(), false);
+            log.error("Failed to write batch of {} webhooks to Redis: {}", batch.size(), e.getMessage(), e);
+            for (PendingEnqueue entry : batch) {
+                entry.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    // A failed write counts with its full duration, as a timeout is the typical failure
+    private void recordWrite(long elapsedNanos, int size, boolean success) {
+        writeLatencyNanos.addAndGet(elapsedNanos);
+        writeCount.incrementAndGet();
+        if (success) {
+            writeSuccessTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            batchSizeSummary.record(size);
+        } else {
+            writeFailureTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void failPending(Exception cause) {
+        PendingEnqueue entry;
+        while ((entry = pending.poll()) != null) {
+            entry.result.completeExceptionally(cause);
+        }
+    }
+
+    private static class PendingEnqueue {
+        private final byte[] payload;
+        private final int shard;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        // Set by whichever of the writer (take) and the timed-out caller (withdraw) gets there first
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private PendingEnqueue(byte[] payload, int shard) {
+            this.payload = payload;
+            this.shard = shard;
+        }
+
+        private boolean take() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        private boolean withdraw() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import com.example.streamsplunkwebhook.util.WebhookEnvelope;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides the Splunk index, sourcetype, source and host of each event, or that it is dropped,
+ * from the {@link RoutingRules} in {@code app.routing.rules-file}. Without a rules file every
+ * event takes the default route from {@code app.routing.default}.
+ *
+ * The file is checked for changes every {@code reload-interval-ms} and recompiled when it
+ * changed; the new rules replace the old ones in one step. A file that does not compile is
+ * logged and the previous rules stay in force. At startup an invalid file fails the application.
+ */
+@Component
+public class EventRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(EventRouter.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final MeterRegistry meterRegistry;
+    private final Route defaults;
+    private final Path rulesFile;
+    private final long reloadIntervalMs;
+
+    private volatile RoutingRules rules;
+    private FileTime loadedModifiedTime;
+    private ScheduledExecutorService reloadExecutor;
+
+    public EventRouter(MeterRegistry meterRegistry, AppConfig appConfig) {
+        this.meterRegistry = meterRegistry;
+        this.defaults = new Route(appConfig.getRoutingDefaultHost(), appConfig.getRoutingDefaultSource(),
+                appConfig.getRoutingDefaultSourcetype(), appConfig.getRoutingDefaultIndex());
+        String file = appConfig.getRoutingRulesFile();
+        this.rulesFile = file == null || file.isBlank() ? null : Path.of(file.trim());
+        this.reloadIntervalMs = Math.max(100, appConfig.getRoutingReloadIntervalMs());
+        this.rules = RoutingRules.compile(null, defaults, meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (rulesFile == null) {
+            log.info("No routing rules file configured; all events are routed to {}.", defaults);
+            return;
+        }
+        try {
+            load();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not load routing rules from " + rulesFile + ": " + e.getMessage(), e);
+        }
+        reloadExecutor = Executors.newSingleThreadScheduledExecutor();
+        reloadExecutor.scheduleWithFixedDelay(this::reloadIfChanged, reloadIntervalMs, reloadIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reloadExecutor != null) {
+            reloadExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The route for the event, or null if a rule drops it or samples it out.
+     */
+    public Route routeFor(WebhookEnvelope envelope) {
+        return rules.routeFor(envelope);
+    }
+
+    public Route getDefaultRoute() {
+        return rules.getDefaultRoute();
+    }
+
+    /**
+     * Reads and compiles the rules file now, whether or not it changed.
+     * @throws IOException if the file cannot be read or parsed.
+     * @throws IllegalArgumentException if the rules are invalid.
+     */
+    public synchronized void load() throws IOException {
+        FileTime modifiedTime = Files.getLastModifiedTime(rulesFile);
+        RoutingRules compiled = RoutingRules.compile(objectMapper.readTree(rulesFile.toFile()), defaults, meterRegistry);
+        rules = compiled;
+        loadedModifiedTime = modifiedTime;
+        log.info("Loaded {} routing rule(s) from {}; default route {}.", compiled.size(), rulesFile, compiled.getDefaultRoute());
+    }
+
+    private synchronized void reloadIfChanged() {
+        try {
+            if (Files.getLastModifiedTime(rulesFile).equals(loadedModifiedTime)) {
+                return;
+            }
+            load();
+        } catch (Exception e) {
+            log.error("Could not reload routing rules from {}; keeping the previous rules: {}", rulesFile, e.getMessage());
+            try {
+                // Not retried until the file changes again
+                loadedModifiedTime = Files.getLastModifiedTime(rulesFile);
+            } catch (IOException ignored) {
+                // Missing file: retried on the next check
+            }
+        }
+    }
+}
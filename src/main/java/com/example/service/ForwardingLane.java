@@ -0,0 +1,149 @@
+package com.example.streamsplunkwebhook.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * One ordered consumer of the forwarding pipeline. Events routed to the same lane are batched
+ * together and sent to HEC strictly in order: a lane keeps at most one request in flight and
+ * only dispatches its next sealed batch once the previous one has completed. Parallelism comes
+ * from running many lanes side by side, so the number of lanes bounds the in-flight HEC requests.
+ *
+ * Handing an event to a lane never blocks: while the lane waits for a slow request, further
+ * batches are parked in the lane, so the fetcher keeps feeding the other lanes. The fetcher
+ * stops fetching only once some lane has parked {@link #MAX_PARKED_BATCHES}. A parked batch can
+ * outwait its deduplication claims, so the sender renews them before the request.
+ */
+public class ForwardingLane {
+
+    // Sealed batches a lane may park while its in-flight request completes before the fetcher pauses
+    static final int MAX_PARKED_BATCHES = 64;
+
+    private final Supplier<HecBatch> batchFactory;
+    private final Function<HecBatch, Mono<Void>> sender;
+    private final Deque<HecBatch> sealed = new ArrayDeque<>();
+
+    private HecBatch open;
+    private boolean inFlight;
+
+    public ForwardingLane(Supplier<HecBatch> batchFactory, Function<HecBatch, Mono<Void>> sender) {
+        this.batchFactory = batchFactory;
+        this.sender = sender;
+        this.open = batchFactory.get();
+    }
+
+    /**
+     * Appends an event to the lane's open batch, sealing and dispatching it when it fills up.
+     * Never blocks; sealed batches that cannot be sent yet are parked behind the in-flight one.
+     */
+    public void add(String webhookId, String claimToken, String receiptId, int attempt, HecEventWriter event) {
+        HecBatch toSend;
+        synchronized (this) {
+            if (open.wouldOverflow(event.size())) {
+                seal();
+            }
+            open.add(webhookId, claimToken, receiptId, attempt, event);
+            if (open.isFull()) {
+                seal();
+            }
+            toSend = takeNextToSend();
+        }
+        send(toSend);
+    }
+
+    /**
+     * True once the lane has parked as many sealed batches as it may hold; the fetcher stops
+     * fetching until the lane catches up rather than buffering without bound.
+     */
+    public synchronized boolean isSaturated() {
+        return sealed.size() >= MAX_PARKED_BATCHES;
+    }
+
+    public synchronized boolean hasOpenBatch() {
+        return !open.isEmpty();
+    }
+
+    /**
+     * Seals the open batch if it has lingered past its max linger time.
+     */
+    public void flushIfExpired(long nowNanos) {
+        HecBatch toSend;
+        synchronized (this) {
+            if (!open.isLingerExpired(nowNanos)) {
+                return;
+            }
+            seal();
+            toSend = takeNextToSend();
+        }
+        send(toSend);
+    }
+
+    /**
+     * Seals whatever is buffered regardless of linger, used on shutdown.
+     */
+    public void flush() {
+        HecBatch toSend;
+        synchronized (this) {
+            if (!open.isEmpty()) {
+                seal();
+            }
+            toSend = takeNextToSend();
+        }
+        send(toSend);
+    }
+
+    /**
+     * Waits until the lane has no buffered or in-flight batches, or the deadline passes.
+     * @return true if the lane drained completely.
+     */
+    public synchronized boolean awaitIdle(long deadlineNanos) throws InterruptedException {
+        while (inFlight || !sealed.isEmpty()) {
+            long remainingMs = (deadlineNanos - System.nanoTime()) / 1_000_000;
+            if (remainingMs <= 0) {
+                return false;
+            }
+            wait(remainingMs);
+        }
+        return true;
+    }
+
+    private void seal() {
+        sealed.add(open);
+        open = batchFactory.get();
+    }
+
+    private HecBatch takeNextToSend() {
+        if (inFlight || sealed.isEmpty()) {
+            return null;
+        }
+        inFlight = true;
+        HecBatch next = sealed.poll();
+        notifyAll();
+        return next;
+    }
+
+    private void send(HecBatch batch) {
+        if (batch == null) {
+            return;
+        }
+        // Subscribed outside the lane lock; completion may run on another thread
+        sender.apply(batch)
+                .onErrorResume(e -> Mono.empty())
+                .doFinally(signal -> onBatchFinished())
+                .subscribe();
+    }
+
+    private void onBatchFinished() {
+        HecBatch toSend;
+        synchronized (this) {
+            inFlight = false;
+            toSend = takeNextToSend();
+            notifyAll();
+        }
+        send(toSend);
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Tracks HEC batches that were accepted with an ackId but are not yet confirmed as indexed
+ * (HEC indexer acknowledgment, "useACK"). AckIds are scoped to one endpoint and channel, so
+ * there is one tracker per HEC endpoint. A background task polls /services/collector/ack for
+ * the outstanding ackIds, at most {@code maxIdsPerPoll} per request, and reports each batch
+ * exactly once: as indexed when HEC confirms it, or as failed when no confirmation arrived
+ * within the timeout.
+ *
+ * Polling never blocks the send path: batches are registered with a map insert, and a poll
+ * round is a chain of non-blocking requests. A new round only starts after the previous one
+ * has finished, so a slow HEC does not pile up ack requests.
+ */
+public class HecAckTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(HecAckTracker.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String ACK_PATH = "/services/collector/ack";
+
+    private final WebClient webClient;
+    private final String channel;
+    private final String authorization;
+    private final long pollIntervalMs;
+    private final long timeoutNanos;
+    private final int maxIdsPerPoll;
+    private final Duration requestTimeout;
+    private final BiConsumer<HecBatch, Boolean> onResult;
+
+    private final Map<Long, PendingAck> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    private final Counter indexed;
+    private final Counter timedOut;
+    private final Timer ackLatency;
+
+    private ScheduledExecutorService pollExecutor;
+
+    /**
+     * @param onResult Called once per registered batch, with true if HEC confirmed indexing and
+     *                 false if it did not within the timeout. Called on a thread that may block.
+     */
+    public HecAckTracker(WebClient webClient, String endpoint, String channel, String token, long pollIntervalMs, long timeoutMs,
+                         int maxIdsPerPoll, long requestTimeoutMs, MeterRegistry meterRegistry,
+                         BiConsumer<HecBatch, Boolean> onResult) {
+        this.webClient = webClient;
+        this.channel = channel;
+        this.authorization = "Splunk " + token;
+        this.pollIntervalMs = Math.max(10, pollIntervalMs);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, timeoutMs));
+        this.maxIdsPerPoll = Math.max(1, maxIdsPerPoll);
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.onResult = onResult;
+
+        Gauge.builder("hec.ack.pending", pending, Map::size)
+                .description("HEC batches accepted but not yet confirmed as indexed")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        this.indexed = ackCounter(meterRegistry, endpoint, "indexed");
+        this.timedOut = ackCounter(meterRegistry, endpoint, "timeout");
+        this.ackLatency = Timer.builder("hec.ack.latency")
+                .description("Time from HEC accepting a batch until it confirmed indexing")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+    }
+
+    private static Counter ackCounter(MeterRegistry meterRegistry, String endpoint, String result) {
+        return Counter.builder("hec.ack")
+                .description("HEC batches awaiting indexer acknowledgment, by how they were resolved")
+                .tag("endpoint", endpoint)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public void start() {
+        pollExecutor = Executors.newSingleThreadScheduledExecutor();
+        pollExecutor.scheduleWithFixedDelay(this::poll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("HEC indexer acknowledgment enabled on channel {}; polling every {} ms.", channel, pollIntervalMs);
+    }
+
+    /**
+     * Stops polling after one last round. Batches still unconfirmed are reported as failed so
+     * they are retried rather than lost; HEC may have indexed some of them already.
+     */
+    public void stop(Duration maxWait) {
+        if (pollExecutor != null) {
+            pollExecutor.shutdownNow();
+        }
+        if (!pending.isEmpty()) {
+            try {
+                pollRound().block(maxWait);
+            } catch (Exception e) {
+                log.warn("Final HEC acknowledgment poll failed: {}", e.getMessage());
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.warn("{} HEC batches were still unconfirmed at shutdown; treating them as failed.", pending.size());
+            for (Long ackId : new ArrayList<>(pending.keySet())) {
+                resolve(ackId, false);
+            }
+        }
+    }
+
+    /**
+     * Registers a batch HEC accepted under the given ackId.
+     */
+    public void register(long ackId, HecBatch batch) {
+        PendingAck previous = pending.put(ackId, new PendingAck(batch, System.nanoTime()));
+        if (previous != null) {
+            // ackIds restart from 0 when HEC loses the channel, e.g. on restart; the older batch's fate is unknown
+            log.warn("HEC reused ackId {} on channel {}; the earlier batch of {} events will be retried.",
+                    ackId, channel, previous.batch.size());
+            timedOut.increment();
+            onResult.accept(previous.batch, false);
+        }
+    }
+
+    private void poll() {
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            expireOverdue();
+            if (pending.isEmpty()) {
+                polling.set(false);
+                return;
+            }
+            pollRound()
+                    .doFinally(signal -> polling.set(false))
+                    .subscribe(null, e -> log.warn("HEC acknowledgment poll failed: {}", e.getMessage()));
+        } catch (Exception e) {
+            polling.set(false);
+            log.error("Unexpected error while polling HEC acknowledgments: {}", e.getMessage(), e);
+        }
+    }
+
+    private void expireOverdue() {
+        long now = System.nanoTime();
+        int expired = 0;
+        for (Map.Entry<Long, PendingAck> entry : pending.entrySet()) {
+            if (now - entry.getValue().registeredAtNanos >= timeoutNanos) {
+                log.debug("HEC did not confirm indexing of ackId {} in time.", entry.getKey());
+                resolve(entry.getKey(), false);
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            log.warn("HEC did not confirm indexing of {} batches in time; they are treated as failed.", expired);
+        }
+    }
+
+    // Queries every outstanding ackId, maxIdsPerPoll at a time, one request after another
+    private Mono<Void> pollRound() {
+        List<List<Long>> chunks = new ArrayList<>();
+        List<Long> chunk = new ArrayList<>(Math.min(maxIdsPerPoll, pending.size()));
+        for (Iterator<Long> it = pending.keySet().iterator(); it.hasNext(); ) {
+            chunk.add(it.next());
+            if (chunk.size() == maxIdsPerPoll) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(maxIdsPerPoll);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return Flux.fromIterable(chunks)
+                .concatMap(ackIds -> queryAcks(ackIds)
+                        // Confirmed batches are finished off with blocking Redis calls, away from the Netty event loop
+                        .publishOn(Schedulers.boundedElastic())
+                        .doOnNext(this::resolveConfirmed)
+                        .onErrorResume(e -> {
+                            log.warn("HEC acknowledgment query for {} ackIds failed: {}", ackIds.size(), e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    private Mono<JsonNode> queryAcks(List<Long> ackIds) {
+        ObjectNode request = objectMapper.createObjectNode();
+        ArrayNode acks = request.putArray("acks");
+        ackIds.forEach(acks::add);
+        return webClient.post()
+                .uri(uriBuilder -> uriBuilder.path(ACK_PATH).queryParam("channel", channel).build())
+                .header(HttpHeaders.AUTHORIZATION, authorization)
+                .header(SplunkForwarderService.CHANNEL_HEADER, channel)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request.toString())
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(requestTimeout)
+                .map(body -> {
+                    try {
+                        return objectMapper.readTree(body).path("acks");
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Unreadable HEC acknowledgment response: " + body, e);
+                    }
+                });
+    }
+
+    // HEC answers {"acks": {"<ackId>": true|false}}; false means not indexed yet
+    private void resolveConfirmed(JsonNode acks) {
+        acks.fields().forEachRemaining(entry -> {
+            if (entry.getValue().asBoolean(false)) {
+                try {
+                    resolve(Long.parseLong(entry.getKey()), true);
+                } catch (NumberFormatException e) {
+                    log.debug("Ignoring unexpected ackId {} in HEC acknowledgment response.", entry.getKey());
+                }
+            }
+        });
+    }
+
+    private void resolve(long ackId, boolean wasIndexed) {
+        // Removal decides which of the poller, the expiry and shutdown reports the batch
+        PendingAck ack = pending.remove(ackId);
+        if (ack == null) {
+            return;
+        }
+        if (wasIndexed) {
+            indexed.increment();
+            ackLatency.record(System.nanoTime() - ack.registeredAtNanos, TimeUnit.NANOSECONDS);
+        } else {
+            timedOut.increment();
+        }
+        try {
+            onResult.accept(ack.batch, wasIndexed);
+        } catch (Exception e) {
+            log.error("Failed to record the acknowledgment result for ackId {}: {}", ackId, e.getMessage(), e);
+        }
+    }
+
+    private static final class PendingAck {
+        private final HecBatch batch;
+        private final long registeredAtNanos;
+
+        private PendingAck(HecBatch batch, long registeredAtNanos) {
+            this.batch = batch;
+            this.registeredAtNanos = registeredAtNanos;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.streamsplunkwebhook.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates serialized HEC event objects so they can be sent to
+ * /services/collector/event as one request body of concatenated events.
+ * A batch is considered ready once it reaches the configured event count,
+ * byte size, or has been open for longer than the max linger time.
+ */
+public class HecBatch {
+
+    private final int maxEvents;
+    private final long maxBytes;
+    private final long maxLingerNanos;
+
+    private final List<String> webhookIds = new ArrayList<>();
+    private final List<String> claimTokens = new ArrayList<>();
+    private final List<String> receiptIds = new ArrayList<>();
+    private final List<Integer> attempts = new ArrayList<>();
+    private final List<HecEventWriter> events = new ArrayList<>();
+    private long sizeInBytes;
+    private long openedAtNanos;
+
+    public HecBatch(int maxEvents, long maxBytes, long maxLingerMs) {
+        this.maxEvents = Math.max(1, maxEvents);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxLingerMs));
+    }
+
+    public void add(String webhookId, String claimToken, String receiptId, int attempt, HecEventWriter event) {
+        if (events.isEmpty()) {
+            openedAtNanos = System.nanoTime();
+        }
+        webhookIds.add(webhookId);
+        claimTokens.add(claimToken);
+        receiptIds.add(receiptId);
+        attempts.add(attempt);
+        events.add(event);
+        sizeInBytes += event.size();
+    }
+
+    /**
+     * Returns true if appending an event of the given size would push a non-empty
+     * batch over its byte limit, in which case the batch should be flushed first.
+     */
+    public boolean wouldOverflow(int eventBytes) {
+        return !events.isEmpty() && sizeInBytes + eventBytes > maxBytes;
+    }
+
+    public boolean isFull() {
+        return events.size() >= maxEvents || sizeInBytes >= maxBytes;
+    }
+
+    public boolean isLingerExpired(long nowNanos) {
+        return !events.isEmpty() && nowNanos - openedAtNanos >= maxLingerNanos;
+    }
+
+    public long remainingLingerMillis(long nowNanos) {
+        if (events.isEmpty()) {
+            return TimeUnit.NANOSECONDS.toMillis(maxLingerNanos);
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(maxLingerNanos - (nowNanos - openedAtNanos)));
+    }
+
+    public int remainingCapacity() {
+        return Math.max(0, maxEvents - events.size());
+    }
+
+    public List<String> getWebhookIds() {
+        return webhookIds;
+    }
+
+    /**
+     * Deduplication claim tokens of the batched events, index-aligned with {@link #getWebhookIds()}.
+     */
+    public List<String> getClaimTokens() {
+        return claimTokens;
+    }
+
+    /**
+     * Queue receipts of the batched events, index-aligned with {@link #getWebhookIds()}.
+     */
+    public List<String> getReceiptIds() {
+        return receiptIds;
+    }
+
+    /**
+     * Failed delivery attempts made before this one, index-aligned with {@link #getWebhookIds()}.
+     */
+    public List<Integer> getAttempts() {
+        return attempts;
+    }
+
+    public int size() {
+        return events.size();
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public List<HecEventWriter> getEvents() {
+        return events;
+    }
+
+    /**
+     * HEC accepts multiple events in one request as plain concatenated JSON objects
+     * (no enclosing array and no separators required). Every event is written straight into
+     * the single, exactly sized request buffer.
+     */
+    public byte[] toRequestBody() {
+        byte[] body = new byte[(int) sizeInBytes];
+        int offset = 0;
+        for (HecEventWriter event : events) {
+            offset = event.writeTo(body, offset);
+        }
+        return body;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.util.WebhookEnvelope;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes HEC event objects directly as bytes from a {@link WebhookEnvelope}:
+ *
+ * <pre>
+ * {"event":&lt;raw body&gt;,"time":&lt;s.mmm&gt;,"host":"..","source":"..","sourcetype":"..",["index":"..",]
+ *  "fields":{"x_webhook_id":"..","x_api_key":".."}}
+ * </pre>
+ *
+ * The host, source, sourcetype and index come from the event's {@link Route}, already encoded.
+ * The webhook body was validated as JSON at ingest and is spliced in verbatim, so no tree model
+ * is built on the forwarding path. Header values are JSON-escaped only when they need it.
+ */
+public final class HecEventWriter {
+
+    private static final byte[] EVENT_PREFIX = ascii("{\"event\":");
+    private static final byte[] TIME_PREFIX = ascii(",\"time\":");
+    private static final byte[] WEBHOOK_ID_PREFIX = ascii(",\"fields\":{\"x_webhook_id\":\"");
+    private static final byte[] API_KEY_PREFIX = ascii("\",\"x_api_key\":\"");
+    private static final byte[] SUFFIX = ascii("\"}}");
+    private static final int FIXED_BYTES = EVENT_PREFIX.length + TIME_PREFIX.length
+            + WEBHOOK_ID_PREFIX.length + API_KEY_PREFIX.length + SUFFIX.length;
+
+    private final WebhookEnvelope envelope;
+    private final byte[] metadata;
+    private final byte[] webhookId;
+    private final byte[] apiKey;
+    private final int apiKeyOffset;
+    private final int apiKeyLength;
+    private final int size;
+
+    public HecEventWriter(WebhookEnvelope envelope, Route route) {
+        this.envelope = envelope;
+        this.metadata = route.getMetadata();
+        this.webhookId = escape(envelope.getWebhookId().getBytes(StandardCharsets.UTF_8));
+
+        byte[] envelopeData = envelope.getData();
+        if (needsEscaping(envelopeData, envelope.getApiKeyOffset(), envelope.getApiKeyLength())) {
+            this.apiKey = JsonStringEncoder.getInstance().quoteAsUTF8(envelope.getApiKey());
+            this.apiKeyOffset = 0;
+            this.apiKeyLength = apiKey.length;
+        } else {
+            this.apiKey = envelopeData;
+            this.apiKeyOffset = envelope.getApiKeyOffset();
+            this.apiKeyLength = envelope.getApiKeyLength();
+        }
+
+        this.size = FIXED_BYTES + metadata.length + envelope.getPayloadLength() + timeLength(envelope.getTimestampMillis())
+                + webhookId.length + apiKeyLength;
+    }
+
+    public WebhookEnvelope getEnvelope() {
+        return envelope;
+    }
+
+    /**
+     * Exact number of bytes {@link #writeTo(byte[], int)} will produce.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes the event into {@code out} starting at {@code offset}.
+     * @return The offset just past the written event.
+     */
+    public int writeTo(byte[] out, int offset) {
+        int pos = put(out, offset, EVENT_PREFIX, 0, EVENT_PREFIX.length);
+        pos = put(out, pos, envelope.getData(), envelope.getPayloadOffset(), envelope.getPayloadLength());
+        pos = put(out, pos, TIME_PREFIX, 0, TIME_PREFIX.length);
+        pos = writeTime(out, pos, envelope.getTimestampMillis());
+        pos = put(out, pos, metadata, 0, metadata.length);
+        pos = put(out, pos, WEBHOOK_ID_PREFIX, 0, WEBHOOK_ID_PREFIX.length);
+        pos = put(out, pos, webhookId, 0, webhookId.length);
+        pos = put(out, pos, API_KEY_PREFIX, 0, API_KEY_PREFIX.length);
+        pos = put(out, pos, apiKey, apiKeyOffset, apiKeyLength);
+        return put(out, pos, SUFFIX, 0, SUFFIX.length);
+    }
+
+    public byte[] toByteArray() {
+        byte[] out = new byte[size];
+        writeTo(out, 0);
+        return out;
+    }
+
+    private static int put(byte[] out, int pos, byte[] src, int srcOffset, int length) {
+        System.arraycopy(src, srcOffset, out, pos, length);
+        return pos + length;
+    }
+
+    // HEC time is epoch seconds with an optional fractional part: <seconds>.<mmm>
+    private static int timeLength(long timestampMillis) {
+        return digits(timestampMillis / 1000) + 4;
+    }
+
+    private static int writeTime(byte[] out, int pos, long timestampMillis) {
+        long seconds = timestampMillis / 1000;
+        int millis = (int) (timestampMillis % 1000);
+        int end = pos + digits(seconds);
+        for (int i = end - 1; i >= pos; i--) {
+            out[i] = (byte) ('0' + seconds % 10);
+            seconds /= 10;
+        }
+        out[end] = '.';
+        out[end + 1] = (byte) ('0' + millis / 100);
+        out[end + 2] = (byte) ('0' + (millis / 10) % 10);
+        out[end + 3] = (byte) ('0' + millis % 10);
+        return end + 4;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static byte[] escape(byte[] utf8) {
+        if (!needsEscaping(utf8, 0, utf8.length)) {
+            return utf8;
+        }
+        return JsonStringEncoder.getInstance().quoteAsUTF8(new String(utf8, StandardCharsets.UTF_8));
+    }
+
+    private static boolean needsEscaping(byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            int b = data[i] & 0xFF;
+            if (b < 0x20 || b == '"' || b == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.MalformedURLException; // Import for URL parsing
+import java.net.URL; // Import for URL parsing
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads HEC requests across the configured endpoints of an indexer cluster.
+ *
+ * Two strategies are available: {@code least-outstanding} picks the endpoint with the fewest
+ * requests in flight relative to its weight, and {@code weighted-round-robin} interleaves
+ * endpoints in proportion to their weights (smooth weighted round-robin, as in nginx).
+ *
+ * Endpoints are ejected passively: after {@code eject-after-failures} consecutive errors or
+ * timeouts an endpoint receives no traffic for {@code ejection-ms}. After that, a background
+ * task probes /services/collector/health until the endpoint answers and then takes it back.
+ * If every endpoint is ejected, requests still go to the least loaded one rather than nowhere;
+ * the circuit breaker is what stops traffic to a cluster that is down as a whole.
+ */
+@Component
+public class HecLoadBalancer {
+
+    public enum Strategy { LEAST_OUTSTANDING, WEIGHTED_ROUND_ROBIN }
+
+    private static final Logger log = LoggerFactory.getLogger(HecLoadBalancer.class);
+    private static final String HEALTH_PATH = "/services/collector/health";
+
+    private final List<Node> nodes;
+    private final Strategy strategy;
+    private final int ejectAfterFailures;
+    private final long ejectionNanos;
+    private final long probeIntervalMs;
+    private final Duration probeTimeout;
+    private final String authorization;
+    private final AtomicInteger tieBreaker = new AtomicInteger();
+
+    private ScheduledExecutorService probeExecutor;
+
+    public HecLoadBalancer(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry, AppConfig appConfig) {
+        this.strategy = parseStrategy(appConfig.getHecLoadBalancingStrategy());
+        this.ejectAfterFailures = Math.max(1, appConfig.getHecEjectAfterFailures());
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, appConfig.getHecEjectionMs()));
+        this.probeIntervalMs = Math.max(100, appConfig.getHecProbeIntervalMs());
+        this.probeTimeout = Duration.ofMillis(appConfig.getSplunkRequestTimeoutMs());
+        this.authorization = "Splunk " + appConfig.getSplunkHecToken();
+
+        List<String> urls = appConfig.getSplunkHecUrls();
+        List<Integer> weights = appConfig.getSplunkHecWeights();
+        List<Node> configured = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            String baseUrl = extractBaseUrl(urls.get(i));
+            // Set the base URL of the WebClient to just the scheme, host, and port; every path is given per request
+            Node node = new Node(baseUrl, weights.get(i), webClientBuilder.clone().baseUrl(baseUrl).build());
+            configured.add(node);
+            Gauge.builder("hec.endpoint.in_flight", node, Node::getInFlight)
+                    .description("HEC requests in flight, per endpoint")
+                    .tag("endpoint", baseUrl)
+                    .register(meterRegistry);
+            Gauge.builder("hec.endpoint.healthy", node, n -> n.isEjected() ? 0 : 1)
+                    .description("1 if the endpoint receives traffic, 0 while it is ejected")
+                    .tag("endpoint", baseUrl)
+                    .register(meterRegistry);
+            node.ejections = Counter.builder("hec.endpoint.ejections")
+                    .description("Times the endpoint was ejected after consecutive failures")
+                    .tag("endpoint", baseUrl)
+                    .register(meterRegistry);
+        }
+        this.nodes = Collections.unmodifiableList(configured);
+    }
+
+    private static Strategy parseStrategy(String strategy) {
+        return "weighted-round-robin".equalsIgnoreCase(strategy == null ? "" : strategy.trim())
+                ? Strategy.WEIGHTED_ROUND_ROBIN
+                : Strategy.LEAST_OUTSTANDING;
+    }
+
+    @PostConstruct
+    public void start() {
+        log.info("Balancing HEC requests across {} endpoint(s) {} ({}).", nodes.size(), nodes, strategy);
+        if (nodes.size() > 1) {
+            probeExecutor = Executors.newSingleThreadScheduledExecutor();
+            probeExecutor.scheduleWithFixedDelay(this::probeEjected, probeIntervalMs, probeIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (probeExecutor != null) {
+            probeExecutor.shutdownNow();
+        }
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Picks the endpoint for the next request and counts it as in flight until the returned
+     * lease is released.
+     */
+    public Lease select() {
+        Node node = nodes.size() == 1 ? nodes.get(0) : choose();
+        node.inFlight.incrementAndGet();
+        return new Lease(node);
+    }
+
+    private Node choose() {
+        List<Node> healthy = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            if (!node.isEjected()) {
+                healthy.add(node);
+            }
+        }
+        if (healthy.isEmpty()) {
+            return leastOutstanding(nodes);
+        }
+        return strategy == Strategy.WEIGHTED_ROUND_ROBIN ? nextWeighted(healthy) : leastOutstanding(healthy);
+    }
+
+    private Node leastOutstanding(List<Node> candidates) {
+        // Start at a rotating offset so that ties do not all go to the first endpoint
+        int offset = Math.floorMod(tieBreaker.getAndIncrement(), candidates.size());
+        Node best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (int i = 0; i < candidates.size(); i++) {
+            Node node = candidates.get((offset + i) % candidates.size());
+            double load = (double) node.getInFlight() / node.weight;
+            if (load < bestLoad) {
+                best = node;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    private synchronized Node nextWeighted(List<Node> candidates) {
+        int totalWeight = 0;
+        Node best = null;
+        for (Node node : candidates) {
+            node.currentWeight += node.weight;
+            totalWeight += node.weight;
+            if (best == null || node.currentWeight > best.currentWeight) {
+                best = node;
+            }
+        }
+        best.currentWeight -= totalWeight;
+        return best;
+    }
+
+    private void probeEjected() {
+        long now = System.nanoTime();
+        for (Node node : nodes) {
+            if (node.isProbeDue(now) && node.probing.compareAndSet(false, true)) {
+                node.webClient.get()
+                        .uri(HEALTH_PATH)
+                        .header(HttpHeaders.AUTHORIZATION, authorization)
+                        .retrieve()
+                        .toBodilessEntity()
+                        .timeout(probeTimeout)
+                        .doFinally(signal -> node.probing.set(false))
+                        .subscribe(response -> node.reinstate(),
+                                e -> {
+                                    log.debug("Health probe of HEC endpoint {} failed: {}", node, e.getMessage());
+                                    node.eject(System.nanoTime() + ejectionNanos, false);
+                                });
+            }
+        }
+    }
+
+    /**
+     * Extracts the scheme, host, and port from a full URL.
+     * Example: "https://http-inputs.example.com:8088/services/collector/event" -> "https://http-inputs.example.com:8088"
+     * @param fullUrl The complete URL string.
+     * @return The base URL (scheme://host:port).
+     */
+    private static String extractBaseUrl(String fullUrl) {
+        try {
+            URL url = new URL(fullUrl);
+            // Construct the base URL from scheme, host, and port
+            StringBuilder baseUrlBuilder = new StringBuilder();
+            baseUrlBuilder.append(url.getProtocol()).append("://").append(url.getHost());
+            if (url.getPort() != -1) {
+                baseUrlBuilder.append(":").append(url.getPort());
+            }
+            return baseUrlBuilder.toString();
+        } catch (MalformedURLException e) {
+            log.error("Malformed Splunk HEC URL provided: {}. Cannot extract base URL.", fullUrl, e);
+            // Fallback to the original full URL, but this might lead to continued 404s
+            return fullUrl;
+        }
+    }
+
+    /**
+     * One HEC endpoint and its health as seen from the responses it gave.
+     */
+    public final class Node {
+
+        private final String baseUrl;
+        private final int weight;
+        private final WebClient webClient;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean probing = new AtomicBoolean();
+        private Counter ejections;
+
+        // Guarded by this node
+        private int consecutiveFailures;
+        private boolean ejected;
+        private long ejectedUntilNanos;
+
+        // Guarded by the enclosing balancer, only used by weighted round-robin
+        private int currentWeight;
+
+        private Node(String baseUrl, int weight, WebClient webClient) {
+            this.baseUrl = baseUrl;
+            this.weight = weight;
+            this.webClient = webClient;
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public WebClient getWebClient() {
+            return webClient;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public synchronized boolean isEjected() {
+            return ejected;
+        }
+
+        public synchronized int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        private synchronized boolean isProbeDue(long nowNanos) {
+            return ejected && nowNanos - ejectedUntilNanos >= 0;
+        }
+
+        private void onResult(AdaptiveConcurrencyLimiter.Outcome outcome, boolean timedOut) {
+            if (outcome == AdaptiveConcurrencyLimiter.Outcome.IGNORED) {
+                return;
+            }
+            // 503 / 429 are load signals for the concurrency limiter; only errors and timeouts eject
+            boolean failed = outcome == AdaptiveConcurrencyLimiter.Outcome.FAILURE || timedOut;
+            boolean eject;
+            synchronized (this) {
+                consecutiveFailures = failed ? consecutiveFailures + 1 : 0;
+                eject = failed && !ejected && consecutiveFailures >= ejectAfterFailures;
+            }
+            if (eject && nodes.size() > 1) {
+                eject(System.nanoTime() + ejectionNanos, true);
+            }
+        }
+
+        private void eject(long untilNanos, boolean firstTime) {
+            synchronized (this) {
+                ejected = true;
+                ejectedUntilNanos = untilNanos;
+            }
+            if (firstTime) {
+                ejections.increment();
+                log.warn("Ejected HEC endpoint {} after {} consecutive failures; probing it again in {} ms.",
+                        this, ejectAfterFailures, TimeUnit.NANOSECONDS.toMillis(ejectionNanos));
+            }
+        }
+
+        private void reinstate() {
+            synchronized (this) {
+                if (!ejected) {
+                    return;
+                }
+                ejected = false;
+                consecutiveFailures = 0;
+            }
+            log.info("HEC endpoint {} answered its health probe and receives traffic again.", this);
+        }
+
+        @Override
+        public String toString() {
+            return baseUrl;
+        }
+    }
+
+    /**
+     * One request's claim on an endpoint. Must be released exactly once with the outcome of the
+     * request; further releases are ignored.
+     */
+    public static final class Lease {
+
+        private final Node node;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(Node node) {
+            this.node = node;
+        }
+
+        public Node getNode() {
+            return node;
+        }
+
+        public void release(AdaptiveConcurrencyLimiter.Outcome outcome, boolean timedOut) {
+            if (released.compareAndSet(false, true)) {
+                node.inFlight.decrementAndGet();
+                node.onResult(outcome, timedOut);
+            }
+        }
+    }
+}
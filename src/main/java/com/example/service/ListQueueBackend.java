@@ -0,0 +1,199 @@
+package com.example.streamsplunkwebhook.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Original queue backend: a Redis list per shard with RPUSH/LPOP. Items are removed on pop, so
+ * anything popped by a worker that crashes before forwarding it is lost.
+ */
+public class ListQueueBackend implements WebhookQueueBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(ListQueueBackend.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final byte[][] rawQueueKeys;
+    // Keys of the shards this consumer reads from
+    private volatile byte[][] ownedKeys;
+
+    public ListQueueBackend(RedisTemplate<String, String> redisTemplate, List<String> queueKeys) {
+        this.redisTemplate = redisTemplate;
+        this.rawQueueKeys = new byte[queueKeys.size()][];
+        for (int i = 0; i < rawQueueKeys.length; i++) {
+            rawQueueKeys[i] = queueKeys.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        this.ownedKeys = rawQueueKeys.clone();
+    }
+
+    @Override
+    public int getShardCount() {
+        return rawQueueKeys.length;
+    }
+
+    @Override
+    public void assignShards(Collection<Integer> shards) {
+        byte[][] keys = new byte[shards.size()][];
+        int i = 0;
+        for (int shard : shards) {
+            keys[i++] = rawQueueKeys[shard];
+        }
+        ownedKeys = keys;
+    }
+
+    @Override
+    public void enqueue(byte[] webhookPayload, int shard) {
+        Long length = redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.listCommands().rPush(rawQueueKeys[shard], webhookPayload));
+        log.debug("Webhook queued successfully. New queue length: {}", length);
+    }
+
+    @Override
+    public void enqueueAll(List<byte[]> webhookPayloads, int[] shards) {
+        List<List<byte[]>> byShard = groupByShard(webhookPayloads, shards);
+        if (byShard.size() == 1) {
+            // A single multi-value RPUSH
+            int shard = shards[0];
+            byte[][] values = webhookPayloads.toArray(new byte[0][]);
+            Long length = redisTemplate.execute((RedisCallback<Long>) connection ->
+                    connection.listCommands().rPush(rawQueueKeys[shard], values));
+            log.debug("Queued {} webhooks in one write. New queue length: {}", webhookPayloads.size(), length);
+            return;
+        }
+        // One multi-value RPUSH per shard, pipelined into one round-trip
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int shard = 0; shard < byShard.size(); shard++) {
+                List<byte[]> values = byShard.get(shard);
+                if (values != null) {
+                    connection.listCommands().rPush(rawQueueKeys[shard], values.toArray(new byte[0][]));
+                }
+            }
+            return null;
+        });
+        log.debug("Queued {} webhooks in one pipelined write across shards.", webhookPayloads.size());
+    }
+
+    // Index = shard, null where a shard got nothing; a single-element list if all share one shard
+    private List<List<byte[]>> groupByShard(List<byte[]> webhookPayloads, int[] shards) {
+        boolean singleShard = true;
+        for (int shard : shards) {
+            singleShard &= shard == shards[0];
+        }
+        if (singleShard) {
+            return Collections.singletonList(webhookPayloads);
+        }
+        List<List<byte[]>> byShard = new ArrayList<>(Collections.nCopies(rawQueueKeys.length, null));
+        for (int i = 0; i < shards.length; i++) {
+            if (byShard.get(shards[i]) == null) {
+                byShard.set(shards[i], new ArrayList<>());
+            }
+            byShard.get(shards[i]).add(webhookPayloads.get(i));
+        }
+        return byShard;
+    }
+
+    @Override
+    public QueuedWebhook dequeue(long timeoutSeconds) {
+        byte[][] keys = ownedKeys;
+        if (keys.length == 0) {
+            sleepQuietly(timeoutSeconds);
+            return null;
+        }
+        // BLPOP over all owned shards replies with [key, value]
+        List<byte[]> result = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.listCommands().bLPop((int) timeoutSeconds, keys));
+        if (result != null && result.size() == 2) {
+            // Log that an item was dequeued
+            log.debug("Dequeued item of {} bytes from Redis queue {}.", result.get(1).length,
+                    new String(result.get(0), StandardCharsets.UTF_8));
+            return new QueuedWebhook(result.get(1), null);
+        }
+        // Log that no item was found (only at debug level to avoid clutter)
+        log.debug("No item found in Redis queue after {} seconds.", timeoutSeconds);
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<QueuedWebhook> dequeue(int maxItems) {
+        byte[][] keys = ownedKeys;
+        if (maxItems <= 0 || keys.length == 0) {
+            return Collections.emptyList();
+        }
+        List<byte[]> popped = new ArrayList<>();
+        if (keys.length == 1) {
+            // LPOP with COUNT, Redis 6.2+
+            List<byte[]> result = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                    connection.listCommands().lPop(keys[0], maxItems));
+            if (result != null) {
+                popped.addAll(result);
+            }
+        } else {
+            // An even share of maxItems from every owned shard, in one round-trip; values stay raw bytes
+            int perShard = Math.max(1, maxItems / keys.length);
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[] key : keys) {
+                    connection.listCommands().lPop(key, perShard);
+                }
+                return null;
+            }, null);
+            for (Object result : results) {
+                if (result instanceof List) {
+                    popped.addAll((List<byte[]>) result);
+                }
+            }
+        }
+        if (popped.isEmpty()) {
+            return Collections.emptyList();
+        }
+        log.debug("Dequeued {} items from Redis queue.", popped.size());
+        List<QueuedWebhook> items = new ArrayList<>(popped.size());
+        for (byte[] payload : popped) {
+            items.add(new QueuedWebhook(payload, null));
+        }
+        return items;
+    }
+
+    @Override
+    public void acknowledge(List<String> receiptIds) {
+        // Nothing to do: list items are gone as soon as they are popped
+    }
+
+    @Override
+    public List<QueuedWebhook> claimStale(int maxItems) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public long depth() {
+        List<Object> lengths = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[] key : rawQueueKeys) {
+                connection.listCommands().lLen(key);
+            }
+            return null;
+        });
+        long depth = 0;
+        for (Object length : lengths) {
+            if (length instanceof Number) {
+                depth += ((Number) length).longValue();
+            }
+        }
+        return depth;
+    }
+
+    // With no shards assigned there is nothing to block on; wait as a BLPOP would
+    private static void sleepQuietly(long seconds) {
+        try {
+            Thread.sleep(Math.max(1, seconds) * 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.streamsplunkwebhook.service;
+
+/**
+ * A webhook payload taken off the queue together with the backend-specific receipt needed to
+ * acknowledge it. The receipt is null for backends without acknowledgement (the plain list) and
+ * for items coming from the retry set. The attempt count is the number of failed deliveries so far.
+ */
+public class QueuedWebhook {
+
+    private final byte[] payload;
+    private final String receiptId;
+    private final int attempt;
+
+    public QueuedWebhook(byte[] payload, String receiptId) {
+        this(payload, receiptId, 0);
+    }
+
+    public QueuedWebhook(byte[] payload, String receiptId, int attempt) {
+        this.payload = payload;
+        this.receiptId = receiptId;
+        this.attempt = attempt;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public String getReceiptId() {
+        return receiptId;
+    }
+
+    public int getAttempt() {
+        return attempt;
+    }
+}
@@ -1,13 +1,21 @@
 package com.example.streamsplunkwebhook.service;
 
 import com.example.streamsplunkwebhook.config.AppConfig;
+import com.example.streamsplunkwebhook.util.GzipCodec;
+import com.example.streamsplunkwebhook.util.JsonFields;
+import com.example.streamsplunkwebhook.util.WebhookEnvelope;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -16,42 +24,234 @@ public class RedisQueueService {
     private static final Logger log = LoggerFactory.getLogger(RedisQueueService.class);
 
     private final RedisTemplate<String, String> redisTemplate;
+    private final WebhookQueueBackend queueBackend;
     private final String webhookQueueName;
-    private final String processedSetKey;
-    private final long deduplicationWindowSeconds;
+    private final boolean compressionEnabled;
+    private final int compressionLevel;
+    private final int compressionMinBytes;
+    private final int shardCount;
+    // Path of the payload field that picks the shard, e.g. channel.id; null to shard by webhook ID
+    private final String[] shardKeyPath;
+    private final String consumerName;
+    private final Timer dequeueTimer;
 
-    public RedisQueueService(RedisTemplate<String, String> redisTemplate, AppConfig appConfig) {
+    public RedisQueueService(RedisTemplate<String, String> redisTemplate, MeterRegistry meterRegistry, AppConfig appConfig) {
         this.redisTemplate = redisTemplate;
         this.webhookQueueName = appConfig.getWebhookQueueName();
-        this.processedSetKey = "processed_webhooks:" + webhookQueueName; // Key for deduplication set
-        this.deduplicationWindowSeconds = appConfig.getDeduplicationWindowSeconds();
+        this.compressionEnabled = appConfig.isQueueCompressionEnabled();
+        this.compressionLevel = appConfig.getQueueCompressionLevel();
+        this.compressionMinBytes = appConfig.getQueueCompressionMinBytes();
+        this.shardCount = Math.max(1, appConfig.getQueueShards());
+        String shardKey = appConfig.getQueueShardKey();
+        this.shardKeyPath = shardKey == null || shardKey.isBlank() ? null : shardKey.trim().split("\\.");
+        String configuredConsumerName = appConfig.getQueueStreamConsumerName();
+        this.consumerName = configuredConsumerName == null || configuredConsumerName.isBlank()
+                ? "forwarder-" + UUID.randomUUID()
+                : configuredConsumerName;
+        this.queueBackend = createQueueBackend(appConfig);
+        this.dequeueTimer = Timer.builder("webhook.queue.dequeue")
+                .description("Latency of non-blocking batch reads from the Redis queue")
+                .register(meterRegistry);
     }
 
-    public void enqueueWebhook(String webhookPayload) {
-        Long length = redisTemplate.opsForList().rightPush(webhookQueueName, webhookPayload);
-        log.info("Webhook queued successfully. New queue length: {}", length);
+    private WebhookQueueBackend createQueueBackend(AppConfig appConfig) {
+        if (AppConfig.QUEUE_BACKEND_STREAM.equalsIgnoreCase(appConfig.getQueueBackend())) {
+            List<String> streamKeys = shardKeys(webhookQueueName + ":stream");
+            log.info("Using Redis Stream queue backend: streams={}, group={}, consumer={}",
+                    streamKeys, appConfig.getQueueStreamGroup(), consumerName);
+            return new StreamQueueBackend(redisTemplate, streamKeys, appConfig.getQueueStreamGroup(),
+                    consumerName, appConfig.getQueueStreamMaxLength(), appConfig.getQueueStreamClaimMinIdleMs());
+        }
+        List<String> queueKeys = shardKeys(webhookQueueName);
+        log.info("Using Redis list queue backend: {}", queueKeys);
+        return new ListQueueBackend(redisTemplate, queueKeys);
+    }
+
+    // A single shard keeps the unsharded key name, so existing deployments carry on where they left off
+    private List<String> shardKeys(String baseKey) {
+        if (shardCount == 1) {
+            return List.of(baseKey);
+        }
+        List<String> keys = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            keys.add(baseKey + ":" + shard);
+        }
+        return keys;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Identity of this process among the queue's consumers: the stream consumer name, also used
+     * for shard ownership.
+     */
+    public String getConsumerName() {
+        return consumerName;
+    }
+
+    /**
+     * Restricts reads to the given shards; see {@link ShardCoordinator}.
+     */
+    public void assignShards(Collection<Integer> shards) {
+        queueBackend.assignShards(shards);
+    }
+
+    /**
+     * The value whose events must stay in order: the configured shard key field of the payload,
+     * or the webhook ID when none is configured or the payload does not have it.
+     */
+    public String orderingKey(WebhookEnvelope envelope) {
+        if (shardKeyPath != null) {
+            String value = JsonFields.scalarAt(envelope.getData(), envelope.getPayloadOffset(),
+                    envelope.getPayloadLength(), shardKeyPath);
+            if (value != null) {
+                return value;
+            }
+        }
+        return envelope.getWebhookId();
+    }
+
+    /**
+     * The shard an encoded webhook envelope belongs to. Undecodable values go to shard 0, where
+     * the forwarder discards them.
+     */
+    public int shardOf(byte[] envelope) {
+        if (shardCount == 1) {
+            return 0;
+        }
+        try {
+            return Math.floorMod(orderingKey(WebhookEnvelope.decode(envelope)).hashCode(), shardCount);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public void enqueueWebhook(byte[] webhookPayload) {
+        queueBackend.enqueue(encodePayload(webhookPayload), shardOf(webhookPayload));
+    }
+
+    public void enqueueWebhooks(List<byte[]> webhookPayloads) {
+        List<byte[]> encoded = new ArrayList<>(webhookPayloads.size());
+        int[] shards = new int[webhookPayloads.size()];
+        for (int i = 0; i < shards.length; i++) {
+            encoded.add(encodePayload(webhookPayloads.get(i)));
+            shards[i] = shardOf(webhookPayloads.get(i));
+        }
+        enqueueEncodedWebhooks(encoded, shards);
     }
 
-    public String dequeueWebhook(long timeoutSeconds) {
-        String result = redisTemplate.opsForList().leftPop(webhookQueueName, Duration.ofSeconds(timeoutSeconds));
-        if (result != null) {
-            // Log that an item was dequeued
-            log.debug("Dequeued item from Redis queue: {}", result);
-            return result;
+    /**
+     * Writes payloads that have already been through {@link #encodePayload(byte[])}, working out
+     * each one's shard, decompressing where needed. Used to put items back on the queue.
+     */
+    public void enqueueEncodedWebhooks(List<byte[]> encodedPayloads) {
+        int[] shards = new int[encodedPayloads.size()];
+        if (shardCount > 1) {
+            for (int i = 0; i < shards.length; i++) {
+                try {
+                    shards[i] = shardOf(decodePayload(encodedPayloads.get(i)));
+                } catch (IOException e) {
+                    shards[i] = 0;
+                }
+            }
         }
-        // Log that no item was found (only at debug level to avoid clutter)
-        log.debug("No item found in Redis queue after {} seconds.", timeoutSeconds);
-        return null;
+        enqueueEncodedWebhooks(encodedPayloads, shards);
     }
 
-    public boolean isWebhookProcessed(String webhookId) {
-        return Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(processedSetKey, webhookId));
+    /**
+     * Writes payloads that have already been through {@link #encodePayload(byte[])} to the given
+     * shards, letting callers do the compression and hashing work on their own threads.
+     */
+    public void enqueueEncodedWebhooks(List<byte[]> encodedPayloads, int[] shards) {
+        if (!encodedPayloads.isEmpty()) {
+            queueBackend.enqueueAll(encodedPayloads, shards);
+        }
+    }
+
+    /**
+     * Applies the storage encoding for queued values: gzip when enabled and the payload is at
+     * least the configured size, otherwise the payload unchanged.
+     */
+    public byte[] encodePayload(byte[] webhookPayload) {
+        if (compressionEnabled && webhookPayload.length >= compressionMinBytes) {
+            return GzipCodec.compress(webhookPayload, compressionLevel);
+        }
+        return webhookPayload;
+    }
+
+    /**
+     * Reverses {@link #encodePayload(byte[])} for a value read back from Redis.
+     */
+    public byte[] decodePayload(byte[] storedPayload) throws IOException {
+        return GzipCodec.isCompressed(storedPayload) ? GzipCodec.decompress(storedPayload) : storedPayload;
     }
 
-    public void markWebhookAsProcessed(String webhookId) {
-        redisTemplate.opsForSet().add(processedSetKey, webhookId);
-        // Set expiry for the deduplication key
-        redisTemplate.expire(processedSetKey, deduplicationWindowSeconds, TimeUnit.SECONDS);
-        log.debug("Marked webhook ID {} as processed in Redis for deduplication.", webhookId);
+    public QueuedWebhook dequeueWebhook(long timeoutSeconds) {
+        QueuedWebhook item = queueBackend.dequeue(timeoutSeconds);
+        return item == null ? null : decode(item);
+    }
+
+    /**
+     * Non-blocking read of up to {@code maxItems} queued webhooks in a single round-trip.
+     * Returns an empty list if the queue is empty.
+     */
+    public List<QueuedWebhook> dequeueWebhooks(int maxItems) {
+        long start = System.nanoTime();
+        List<QueuedWebhook> items = queueBackend.dequeue(maxItems);
+        dequeueTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return decode(items);
+    }
+
+    /**
+     * Confirms that the given items have been dealt with and must not be redelivered.
+     * Receipt IDs that are null (list backend) are ignored.
+     */
+    public void acknowledgeWebhooks(List<String> receiptIds) {
+        List<String> ids = new ArrayList<>(receiptIds.size());
+        for (String receiptId : receiptIds) {
+            if (receiptId != null) {
+                ids.add(receiptId);
+            }
+        }
+        if (!ids.isEmpty()) {
+            queueBackend.acknowledge(ids);
+        }
+    }
+
+    /**
+     * Takes over items another consumer read but never acknowledged.
+     */
+    public List<QueuedWebhook> claimStaleWebhooks(int maxItems) {
+        return decode(queueBackend.claimStale(maxItems));
+    }
+
+    /**
+     * Current backlog of the queue, in items.
+     */
+    public long getQueueDepth() {
+        return queueBackend.depth();
+    }
+
+    private List<QueuedWebhook> decode(List<QueuedWebhook> items) {
+        for (int i = 0; i < items.size(); i++) {
+            items.set(i, decode(items.get(i)));
+        }
+        return items;
+    }
+
+    // Compressed values are recognised by the gzip magic bytes, so compression can be toggled with items in flight
+    private QueuedWebhook decode(QueuedWebhook item) {
+        if (!GzipCodec.isCompressed(item.getPayload())) {
+            return item;
+        }
+        try {
+            return new QueuedWebhook(decodePayload(item.getPayload()), item.getReceiptId());
+        } catch (IOException e) {
+            log.error("Could not decompress queued webhook: {}", e.getMessage());
+            // Left as is; the forwarder will reject and acknowledge it as undecodable
+            return item;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,264 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delayed retries and dead-lettering for webhooks HEC did not accept.
+ *
+ * Failed events go into the sorted set {@code <queue>:retry}, scored by the epoch millisecond of
+ * their next attempt. Each member is the failed attempt count (int32) followed by the stored
+ * envelope. Backoff doubles per attempt up to a cap, with equal jitter so that events failed by the
+ * same outage do not all come due at once. Once an event has failed max-attempts deliveries it is
+ * pushed onto the list {@code <queue>:dlq} instead.
+ *
+ * The dead-letter list can be replayed back into the main queue in bulk. Replay is paced at a fixed
+ * rate, so live traffic keeps flowing and HEC is not flooded straight after an outage.
+ */
+@Service
+public class RetryQueueService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetryQueueService.class);
+    private static final int ATTEMPT_BYTES = 4;
+    private static final int REPLAY_TICKS_PER_SECOND = 10;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisQueueService redisQueueService;
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final int replayBatchSize;
+    private final byte[] rawRetryKey;
+    private final byte[] rawDeadLetterKey;
+
+    private final AtomicLong replayRemaining = new AtomicLong();
+    private final AtomicLong replayedTotal = new AtomicLong();
+    private ScheduledExecutorService replayExecutor;
+
+    public RetryQueueService(RedisTemplate<String, String> redisTemplate, RedisQueueService redisQueueService,
+                             AppConfig appConfig) {
+        this.redisTemplate = redisTemplate;
+        this.redisQueueService = redisQueueService;
+        this.enabled = appConfig.isRetryEnabled();
+        this.maxAttempts = Math.max(1, appConfig.getRetryMaxAttempts());
+        this.initialBackoffMs = Math.max(1, appConfig.getRetryInitialBackoffMs());
+        this.maxBackoffMs = Math.max(initialBackoffMs, appConfig.getRetryMaxBackoffMs());
+        this.replayBatchSize = Math.max(1, appConfig.getDeadLetterReplayRatePerSecond() / REPLAY_TICKS_PER_SECOND);
+        this.rawRetryKey = (appConfig.getWebhookQueueName() + ":retry").getBytes(StandardCharsets.UTF_8);
+        this.rawDeadLetterKey = (appConfig.getWebhookQueueName() + ":dlq").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        replayExecutor = Executors.newSingleThreadScheduledExecutor();
+        long tickMs = 1000 / REPLAY_TICKS_PER_SECOND;
+        replayExecutor.scheduleAtFixedRate(this::replayTick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (replayExecutor == null) {
+            return;
+        }
+        replayExecutor.shutdown();
+        try {
+            if (!replayExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                replayExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            replayExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Schedules failed deliveries for another attempt, or dead-letters those that have used up
+     * their attempts. Everything is written in one pipelined round-trip.
+     * @param failed Items whose payload is the decoded envelope and whose attempt count already
+     *               includes the delivery that just failed.
+     */
+    public void scheduleRetries(List<QueuedWebhook> failed) {
+        if (failed.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<byte[]> retryMembers = new ArrayList<>(failed.size());
+        List<Double> retryScores = new ArrayList<>(failed.size());
+        List<byte[]> deadLetters = new ArrayList<>();
+        for (QueuedWebhook item : failed) {
+            byte[] stored = redisQueueService.encodePayload(item.getPayload());
+            if (item.getAttempt() >= maxAttempts) {
+                deadLetters.add(stored);
+            } else {
+                retryMembers.add(retryMember(item.getAttempt(), stored));
+                retryScores.add((double) (now + backoffMillis(item.getAttempt())));
+            }
+        }
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < retryMembers.size(); i++) {
+                connection.zSetCommands().zAdd(rawRetryKey, retryScores.get(i), retryMembers.get(i));
+            }
+            if (!deadLetters.isEmpty()) {
+                connection.listCommands().rPush(rawDeadLetterKey, deadLetters.toArray(new byte[0][]));
+            }
+            return null;
+        });
+
+        if (!retryMembers.isEmpty()) {
+            log.info("Scheduled {} failed webhooks for retry.", retryMembers.size());
+        }
+        if (!deadLetters.isEmpty()) {
+            log.error("Moved {} webhooks to the dead-letter queue after {} failed delivery attempts.", deadLetters.size(), maxAttempts);
+        }
+    }
+
+    /**
+     * Takes up to {@code maxItems} retries whose next attempt is due. Members are claimed with
+     * ZREM, so when several forwarders poll the same set each retry is handed to only one of them.
+     */
+    public List<QueuedWebhook> pollDueRetries(int maxItems) {
+        Set<byte[]> due = redisTemplate.execute((RedisCallback<Set<byte[]>>) connection ->
+                connection.zSetCommands().zRangeByScore(rawRetryKey, Double.NEGATIVE_INFINITY,
+                        System.currentTimeMillis(), 0, maxItems));
+        if (due == null || due.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<byte[]> members = new ArrayList<>(due);
+        List<Object> removed = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[] member : members) {
+                connection.zSetCommands().zRem(rawRetryKey, member);
+            }
+            return null;
+        });
+
+        List<QueuedWebhook> items = new ArrayList<>(members.size());
+        for (int i = 0; i < members.size(); i++) {
+            if (!Long.valueOf(1L).equals(removed.get(i))) {
+                continue; // Taken by another forwarder
+            }
+            byte[] member = members.get(i);
+            if (member.length < ATTEMPT_BYTES) {
+                log.error("Discarding malformed retry entry of {} bytes.", member.length);
+                continue;
+            }
+            int attempt = ((member[0] & 0xFF) << 24) | ((member[1] & 0xFF) << 16) | ((member[2] & 0xFF) << 8) | (member[3] & 0xFF);
+            try {
+                items.add(new QueuedWebhook(redisQueueService.decodePayload(Arrays.copyOfRange(member, ATTEMPT_BYTES, member.length)), null, attempt));
+            } catch (Exception e) {
+                log.error("Discarding retry entry that could not be decoded: {}", e.getMessage());
+            }
+        }
+        return items;
+    }
+
+    public long getRetryQueueSize() {
+        Long size = redisTemplate.execute((RedisCallback<Long>) connection -> connection.zSetCommands().zCard(rawRetryKey));
+        return size == null ? 0 : size;
+    }
+
+    public long getDeadLetterQueueSize() {
+        Long size = redisTemplate.execute((RedisCallback<Long>) connection -> connection.listCommands().lLen(rawDeadLetterKey));
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * Starts, or extends, a paced replay of the dead-letter queue into the main queue.
+     * @param maxItems How many dead letters to replay; the replay stops early if the list runs empty.
+     */
+    public void startDeadLetterReplay(long maxItems) {
+        long total = replayRemaining.addAndGet(Math.max(0, maxItems));
+        log.info("Dead-letter replay requested for {} webhooks ({} pending) at {} per second.",
+                maxItems, total, (long) replayBatchSize * REPLAY_TICKS_PER_SECOND);
+    }
+
+    public void cancelDeadLetterReplay() {
+        long cancelled = replayRemaining.getAndSet(0);
+        log.info("Dead-letter replay cancelled with {} webhooks left.", cancelled);
+    }
+
+    public long getReplayRemaining() {
+        return replayRemaining.get();
+    }
+
+    public long getReplayedTotal() {
+        return replayedTotal.get();
+    }
+
+    // Moves one rate-limited slice of the dead-letter list back onto the main queue
+    private void replayTick() {
+        long remaining = replayRemaining.get();
+        if (remaining <= 0) {
+            return;
+        }
+        int count = (int) Math.min(remaining, replayBatchSize);
+        try {
+            List<byte[]> items = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                    connection.listCommands().lPop(rawDeadLetterKey, count));
+            if (items == null || items.isEmpty()) {
+                replayRemaining.set(0);
+                log.info("Dead-letter queue is empty; replay finished after {} webhooks in total.", replayedTotal.get());
+                return;
+            }
+            try {
+                redisQueueService.enqueueEncodedWebhooks(items);
+            } catch (Exception e) {
+                // Put the slice back at the head of the list in its original order
+                List<byte[]> reversed = new ArrayList<>(items);
+                Collections.reverse(reversed);
+                redisTemplate.execute((RedisCallback<Long>) connection ->
+                        connection.listCommands().lPush(rawDeadLetterKey, reversed.toArray(new byte[0][])));
+                throw e;
+            }
+            replayRemaining.addAndGet(-items.size());
+            replayedTotal.addAndGet(items.size());
+        } catch (Exception e) {
+            log.warn("Dead-letter replay step failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    private long backoffMillis(int attempt) {
+        long backoff = initialBackoffMs << Math.min(Math.max(0, attempt - 1), 30);
+        if (backoff <= 0 || backoff > maxBackoffMs) {
+            backoff = maxBackoffMs;
+        }
+        // Equal jitter: at least half the backoff, plus a random share of the other half
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    private static byte[] retryMember(int attempt, byte[] storedPayload) {
+        byte[] member = new byte[ATTEMPT_BYTES + storedPayload.length];
+        member[0] = (byte) (attempt >>> 24);
+        member[1] = (byte) (attempt >>> 16);
+        member[2] = (byte) (attempt >>> 8);
+        member[3] = (byte) attempt;
+        System.arraycopy(storedPayload, 0, member, ATTEMPT_BYTES, storedPayload.length);
+        return member;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Where an event goes in Splunk: its host, source, sourcetype and, optionally, index. The HEC
+ * metadata fields are encoded once, when the rules are compiled, and copied into every event
+ * as is by {@link HecEventWriter}.
+ */
+public final class Route {
+
+    private final String host;
+    private final String source;
+    private final String sourcetype;
+    private final String index;
+    private final byte[] metadata;
+
+    public Route(String host, String source, String sourcetype, String index) {
+        this.host = host;
+        this.source = source;
+        this.sourcetype = sourcetype;
+        this.index = index == null || index.isEmpty() ? null : index;
+        StringBuilder fields = new StringBuilder(128);
+        appendField(fields, "host", host);
+        appendField(fields, "source", source);
+        appendField(fields, "sourcetype", sourcetype);
+        if (this.index != null) {
+            appendField(fields, "index", this.index);
+        }
+        this.metadata = fields.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendField(StringBuilder out, String name, String value) {
+        out.append(",\"").append(name).append("\":\"");
+        JsonStringEncoder.getInstance().quoteAsString(value, out);
+        out.append('"');
+    }
+
+    /**
+     * A copy of this route with the given fields replaced where they are not null.
+     */
+    public Route with(String host, String source, String sourcetype, String index) {
+        return new Route(host != null ? host : this.host,
+                source != null ? source : this.source,
+                sourcetype != null ? sourcetype : this.sourcetype,
+                index != null ? index : this.index);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getSourcetype() {
+        return sourcetype;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * The encoded HEC fields, {@code ,"host":"..","source":"..","sourcetype":".."[,"index":".."]}.
+     */
+    byte[] getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public String toString() {
+        return "host=" + host + ", source=" + source + ", sourcetype=" + sourcetype + (index == null ? "" : ", index=" + index);
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.util.JsonFields;
+import com.example.streamsplunkwebhook.util.WebhookEnvelope;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, compiled set of routing rules. Every payload path any rule matches on is
+ * collected at compile time, so deciding on an event takes one streaming pass over its body
+ * that reads just those fields; the rules then compare strings. The first rule whose conditions
+ * all hold decides; an event no rule matches takes the default route.
+ *
+ * Rules are read from a document of this shape:
+ *
+ * <pre>
+ * {"defaults": {"index": "chat"},
+ *  "rules": [
+ *    {"name": "messages", "match": {"type": "message.new"}, "sourcetype": "stream:chat:message"},
+ *    {"name": "typing", "match": {"type": ["typing.start", "typing.stop"]}, "action": "drop"},
+ *    {"name": "users", "match": {"type": "user.*", "channel.type": "messaging"}, "sample": 0.1}]}
+ * </pre>
+ *
+ * Match keys are dot-separated paths into the payload; a value is a string or a list of strings,
+ * where a trailing {@code *} matches by prefix. {@code sample} keeps that fraction of the
+ * matching events, chosen by webhook ID so a redelivered event gets the same decision.
+ */
+final class RoutingRules {
+
+    private static final String DEFAULT_RULE = "default";
+
+    private final Route defaultRoute;
+    private final String[][] paths;
+    private final Rule[] rules;
+    private final Counter defaultRouted;
+
+    private RoutingRules(Route defaultRoute, String[][] paths, Rule[] rules, Counter defaultRouted) {
+        this.defaultRoute = defaultRoute;
+        this.paths = paths;
+        this.rules = rules;
+        this.defaultRouted = defaultRouted;
+    }
+
+    /**
+     * Compiles a rules document; a null document gives a rule set that routes everything to
+     * {@code defaults}.
+     * @throws IllegalArgumentException if the document is not valid.
+     */
+    static RoutingRules compile(JsonNode document, Route defaults, MeterRegistry meterRegistry) {
+        Route defaultRoute = defaults;
+        List<Rule> rules = new ArrayList<>();
+        Map<String, Integer> pathIndexes = new LinkedHashMap<>();
+        if (document != null) {
+            if (!document.isObject()) {
+                throw new IllegalArgumentException("Routing rules must be a JSON object");
+            }
+            defaultRoute = withOverrides(defaults, document.path("defaults"));
+            JsonNode ruleNodes = document.path("rules");
+            if (!ruleNodes.isMissingNode() && !ruleNodes.isArray()) {
+                throw new IllegalArgumentException("\"rules\" must be an array");
+            }
+            Set<String> names = new HashSet<>();
+            for (int i = 0; i < ruleNodes.size(); i++) {
+                Rule rule = compileRule(ruleNodes.get(i), i, defaultRoute, pathIndexes, meterRegistry);
+                if (!names.add(rule.name)) {
+                    throw new IllegalArgumentException("Duplicate rule name: " + rule.name);
+                }
+                rules.add(rule);
+            }
+        }
+        String[][] paths = new String[pathIndexes.size()][];
+        for (Map.Entry<String, Integer> path : pathIndexes.entrySet()) {
+            paths[path.getValue()] = path.getKey().split("\\.");
+        }
+        return new RoutingRules(defaultRoute, paths, rules.toArray(new Rule[0]),
+                routingCounter(meterRegistry, DEFAULT_RULE, "routed"));
+    }
+
+    private static Rule compileRule(JsonNode node, int position, Route defaultRoute, Map<String, Integer> pathIndexes,
+                                    MeterRegistry meterRegistry) {
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Rule " + position + " must be a JSON object");
+        }
+        String name = node.path("name").asText("rule-" + position);
+        String action = node.path("action").asText("route");
+        boolean drop;
+        if ("drop".equals(action)) {
+            drop = true;
+        } else if ("route".equals(action)) {
+            drop = false;
+        } else {
+            throw new IllegalArgumentException("Rule " + name + ": unknown action \"" + action + "\"");
+        }
+        double sample = node.path("sample").asDouble(1.0);
+        if (!(sample >= 0 && sample <= 1)) {
+            throw new IllegalArgumentException("Rule " + name + ": sample must be between 0 and 1");
+        }
+
+        JsonNode match = node.path("match");
+        if (!match.isMissingNode() && !match.isObject()) {
+            throw new IllegalArgumentException("Rule " + name + ": \"match\" must be an object");
+        }
+        List<Condition> conditions = new ArrayList<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = match.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = it.next();
+            String path = field.getKey();
+            if (path.isEmpty() || path.startsWith(".") || path.endsWith(".") || path.contains("..")) {
+                throw new IllegalArgumentException("Rule " + name + ": invalid field path \"" + path + "\"");
+            }
+            Integer pathIndex = pathIndexes.computeIfAbsent(path, p -> pathIndexes.size());
+            conditions.add(compileCondition(name, pathIndex, field.getValue()));
+        }
+
+        return new Rule(name, conditions.toArray(new Condition[0]),
+                drop ? null : withOverrides(defaultRoute, node), sample,
+                routingCounter(meterRegistry, name, drop ? "dropped" : "routed"),
+                routingCounter(meterRegistry, name, "sampled_out"));
+    }
+
+    private static Condition compileCondition(String ruleName, int pathIndex, JsonNode expected) {
+        List<JsonNode> values = new ArrayList<>();
+        if (expected.isArray()) {
+            expected.forEach(values::add);
+        } else {
+            values.add(expected);
+        }
+        Set<String> exact = new HashSet<>();
+        List<String> prefixes = new ArrayList<>();
+        for (JsonNode value : values) {
+            if (!value.isTextual() && !value.isNumber()) {
+                throw new IllegalArgumentException("Rule " + ruleName + ": match values must be strings or numbers");
+            }
+            String text = value.asText();
+            if (text.endsWith("*")) {
+                prefixes.add(text.substring(0, text.length() - 1));
+            } else {
+                exact.add(text);
+            }
+        }
+        return new Condition(pathIndex, exact, prefixes.toArray(new String[0]));
+    }
+
+    private static Route withOverrides(Route route, JsonNode node) {
+        return route.with(textOrNull(node, "host"), textOrNull(node, "source"),
+                textOrNull(node, "sourcetype"), textOrNull(node, "index"));
+    }
+
+    private static String textOrNull(JsonNode node, String field) {
+        JsonNode value = node.path(field);
+        return value.isTextual() ? value.asText() : null;
+    }
+
+    private static Counter routingCounter(MeterRegistry meterRegistry, String rule, String result) {
+        return Counter.builder("webhook.routing")
+                .description("Events by the routing rule that decided them and its decision")
+                .tag("rule", rule)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    int size() {
+        return rules.length;
+    }
+
+    Route getDefaultRoute() {
+        return defaultRoute;
+    }
+
+    /**
+     * @return The route for the event, or null if it is to be dropped.
+     */
+    Route routeFor(WebhookEnvelope envelope) {
+        if (rules.length == 0) {
+            defaultRouted.increment();
+            return defaultRoute;
+        }
+        String[] values = JsonFields.scalarsAt(envelope.getData(), envelope.getPayloadOffset(),
+                envelope.getPayloadLength(), paths);
+        for (Rule rule : rules) {
+            if (!rule.matches(values)) {
+                continue;
+            }
+            if (rule.sample < 1 && sampleFraction(envelope.getWebhookId()) >= rule.sample) {
+                rule.sampledOut.increment();
+                return null;
+            }
+            rule.decided.increment();
+            return rule.route;
+        }
+        defaultRouted.increment();
+        return defaultRoute;
+    }
+
+    // Spreads the webhook ID's hash evenly over [0, 1)
+    private static double sampleFraction(String webhookId) {
+        long z = webhookId.hashCode() * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    private static final class Rule {
+        private final String name;
+        private final Condition[] conditions;
+        // Null for a drop rule
+        private final Route route;
+        private final double sample;
+        private final Counter decided;
+        private final Counter sampledOut;
+
+        private Rule(String name, Condition[] conditions, Route route, double sample, Counter decided, Counter sampledOut) {
+            this.name = name;
+            this.conditions = conditions;
+            this.route = route;
+            this.sample = sample;
+            this.decided = decided;
+            this.sampledOut = sampledOut;
+        }
+
+        private boolean matches(String[] values) {
+            for (Condition condition : conditions) {
+                if (!condition.matches(values[condition.pathIndex])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Condition {
+        private final int pathIndex;
+        private final Set<String> exact;
+        private final String[] prefixes;
+
+        private Condition(int pathIndex, Set<String> exact, String[] prefixes) {
+            this.pathIndex = pathIndex;
+            this.exact = exact;
+            this.prefixes = prefixes;
+        }
+
+        private boolean matches(String value) {
+            if (value == null) {
+                return false;
+            }
+            if (exact.contains(value)) {
+                return true;
+            }
+            for (String prefix : prefixes) {
+                if (value.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
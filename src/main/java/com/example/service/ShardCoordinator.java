@@ -0,0 +1,156 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the queue shards among the forwarder replicas. Every replica heartbeats into the
+ * sorted set {@code <queue>:members}, scored by the time of its last heartbeat, and drops
+ * members whose heartbeat is older than the member TTL. Each shard then belongs to the member
+ * with the highest hash of (member, shard) (rendezvous hashing), so all replicas agree on the
+ * assignment without talking to each other, and a replica joining or leaving only moves the
+ * shards it gains or loses.
+ *
+ * Ownership changes take effect at the next heartbeat on each replica, so for up to one interval
+ * two replicas may both read a shard that is changing hands. Heartbeat scores use the local
+ * clock; replicas' clocks must agree to well within the member TTL.
+ */
+@Component
+public class ShardCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardCoordinator.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisQueueService redisQueueService;
+    private final String membersKey;
+    private final String memberName;
+    private final int shardCount;
+    private final long rebalanceIntervalMs;
+    private final long memberTtlMs;
+
+    private volatile List<Integer> ownedShards;
+    private List<String> knownMembers = List.of();
+    private ScheduledExecutorService rebalanceExecutor;
+
+    public ShardCoordinator(RedisTemplate<String, String> redisTemplate, RedisQueueService redisQueueService,
+                            MeterRegistry meterRegistry, AppConfig appConfig) {
+        this.redisTemplate = redisTemplate;
+        this.redisQueueService = redisQueueService;
+        this.membersKey = appConfig.getWebhookQueueName() + ":members";
+        this.memberName = redisQueueService.getConsumerName();
+        this.shardCount = redisQueueService.getShardCount();
+        this.rebalanceIntervalMs = Math.max(100, appConfig.getQueueShardRebalanceIntervalMs());
+        this.memberTtlMs = Math.max(rebalanceIntervalMs * 2, appConfig.getQueueShardMemberTtlMs());
+        this.ownedShards = allShards();
+
+        Gauge.builder("webhook.queue.shards.owned", () -> ownedShards.size())
+                .description("Queue shards this replica reads from")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (shardCount == 1) {
+            // Nothing to split; every replica reads the one shard
+            return;
+        }
+        rebalanceExecutor = Executors.newSingleThreadScheduledExecutor();
+        rebalanceExecutor.scheduleWithFixedDelay(this::rebalance, 0, rebalanceIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Coordinating {} queue shards as member {} (heartbeat every {} ms, member TTL {} ms).",
+                shardCount, memberName, rebalanceIntervalMs, memberTtlMs);
+    }
+
+    // Leaving the member set lets the other replicas take over this one's shards at their next heartbeat
+    @PreDestroy
+    public void stop() {
+        if (rebalanceExecutor == null) {
+            return;
+        }
+        rebalanceExecutor.shutdownNow();
+        try {
+            redisTemplate.opsForZSet().remove(membersKey, memberName);
+        } catch (Exception e) {
+            log.warn("Could not leave the shard member set {}: {}", membersKey, e.getMessage());
+        }
+    }
+
+    public List<Integer> getOwnedShards() {
+        return ownedShards;
+    }
+
+    private void rebalance() {
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().add(membersKey, memberName, now);
+            redisTemplate.opsForZSet().removeRangeByScore(membersKey, Double.NEGATIVE_INFINITY, now - memberTtlMs);
+            Set<String> members = redisTemplate.opsForZSet().range(membersKey, 0, -1);
+            if (members == null || members.isEmpty()) {
+                return;
+            }
+            List<String> sorted = new ArrayList<>(members);
+            sorted.sort(null);
+            if (sorted.equals(knownMembers)) {
+                return;
+            }
+            List<Integer> assigned = assign(sorted);
+            knownMembers = sorted;
+            ownedShards = assigned;
+            redisQueueService.assignShards(assigned);
+            log.info("Queue shards rebalanced across {} member(s); this member now reads shards {}.", sorted.size(), assigned);
+        } catch (Exception e) {
+            // The current assignment stays in place until Redis answers again
+            log.warn("Shard rebalance failed: {}", e.getMessage());
+        }
+    }
+
+    private List<Integer> assign(Collection<String> members) {
+        List<Integer> assigned = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            String owner = null;
+            long best = 0;
+            for (String member : members) {
+                long score = mix(((long) member.hashCode() << 32) ^ shard);
+                if (owner == null || Long.compareUnsigned(score, best) > 0
+                        || (score == best && member.compareTo(owner) < 0)) {
+                    owner = member;
+                    best = score;
+                }
+            }
+            if (memberName.equals(owner)) {
+                assigned.add(shard);
+            }
+        }
+        return assigned;
+    }
+
+    // SplitMix64 finalizer, so that member and shard bits are spread over the whole score
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private List<Integer> allShards() {
+        List<Integer> shards = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            shards.add(shard);
+        }
+        return shards;
+    }
+}
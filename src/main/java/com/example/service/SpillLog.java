@@ -0,0 +1,373 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log on local disk for webhooks that could not be written to Redis in
+ * time. Records are appended to fixed-size memory-mapped segment files:
+ *
+ * <pre>
+ *   segment header: int32 magic, int32 offset of the first record not yet replayed
+ *   record:         int32 length, int32 CRC32 of the payload, payload bytes
+ * </pre>
+ *
+ * A zero length marks the end of the written data. A background task replays records into the
+ * queue in append order, persisting the replay offset after each batch, and deletes a segment once
+ * it has been fully replayed and is no longer being written. Spilled data lives in the OS page
+ * cache rather than on the heap; it survives a process crash but, since records are not forced to
+ * disk one by one, not necessarily a host crash.
+ */
+@Service
+public class SpillLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SpillLog.class);
+    private static final int MAGIC = 0x53504C31; // "SPL1"
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "spill-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final RedisQueueService redisQueueService;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final long drainIntervalMs;
+    private final int drainBatchSize;
+
+    // Guards the segment list and all segment positions; Redis writes happen outside it
+    private final Object lock = new Object();
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final AtomicLong pendingRecords = new AtomicLong();
+    private long nextSegmentId;
+
+    private ScheduledExecutorService drainExecutor;
+    private volatile boolean running = true;
+
+    public SpillLog(RedisQueueService redisQueueService, MeterRegistry meterRegistry, AppConfig appConfig) {
+        this.redisQueueService = redisQueueService;
+        this.enabled = appConfig.isSpillEnabled();
+        this.directory = Paths.get(appConfig.getSpillDirectory());
+        this.segmentBytes = appConfig.getSpillSegmentBytes();
+        this.maxSegments = Math.max(1, appConfig.getSpillMaxSegments());
+        this.drainIntervalMs = Math.max(1, appConfig.getSpillDrainIntervalMs());
+        this.drainBatchSize = Math.max(1, appConfig.getEnqueueBatchMaxSize());
+        Gauge.builder("webhook.spill.pending", pendingRecords, AtomicLong::get)
+                .description("Spilled webhooks not yet replayed into Redis")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        recover();
+        log.info("Spill log started in {} ({} segments, {} records pending replay).",
+                directory.toAbsolutePath(), segments.size(), pendingRecords.get());
+    }
+
+    // Replay waits for the application to be ready; recovery above only reads local segments
+    @EventListener(ApplicationReadyEvent.class)
+    public void startDrain() {
+        if (!enabled) {
+            return;
+        }
+        drainExecutor = Executors.newSingleThreadScheduledExecutor();
+        drainExecutor.scheduleWithFixedDelay(this::drain, drainIntervalMs, drainIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        if (drainExecutor != null) {
+            drainExecutor.shutdown();
+            try {
+                if (!drainExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    drainExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                drainExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (lock) {
+            for (Segment segment : segments) {
+                segment.force();
+            }
+        }
+        if (pendingRecords.get() > 0) {
+            log.warn("Spill log stopped with {} records pending replay; they will be replayed on next start.", pendingRecords.get());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether spilled records are still waiting to be replayed. While this is true, new webhooks
+     * are appended here as well so that they reach the queue after the ones spilled before them.
+     */
+    public boolean hasPending() {
+        return pendingRecords.get() > 0;
+    }
+
+    public long getPendingRecords() {
+        return pendingRecords.get();
+    }
+
+    /**
+     * Appends an encoded queue payload to the log.
+     * @throws IOException if the payload cannot fit in a segment or the log has reached its size limit.
+     */
+    public void append(byte[] payload) throws IOException {
+        int recordBytes = RECORD_HEADER_BYTES + payload.length;
+        if (recordBytes > segmentBytes - SEGMENT_HEADER_BYTES) {
+            throw new IOException("Webhook of " + payload.length + " bytes does not fit in a spill segment");
+        }
+        synchronized (lock) {
+            Segment tail = segments.peekLast();
+            if (tail == null || tail.remaining() < recordBytes) {
+                if (segments.size() >= maxSegments) {
+                    throw new IOException("Spill log is full (" + maxSegments + " segments of " + segmentBytes + " bytes)");
+                }
+                if (tail != null) {
+                    tail.force();
+                }
+                tail = Segment.create(directory.resolve(segmentFileName(nextSegmentId++)), segmentBytes);
+                segments.addLast(tail);
+            }
+            tail.append(payload);
+            pendingRecords.incrementAndGet();
+        }
+    }
+
+    /**
+     * Replays spilled records into Redis oldest first, in batches. A failed write leaves the
+     * replay offset where it was, so the batch is retried on the next run.
+     */
+    private void drain() {
+        try {
+            while (running && hasPending()) {
+                List<byte[]> batch = new ArrayList<>(drainBatchSize);
+                Segment head;
+                int nextReadOffset;
+                synchronized (lock) {
+                    retireReplayedSegments();
+                    head = segments.peekFirst();
+                    if (head == null) {
+                        return;
+                    }
+                    nextReadOffset = head.read(batch, drainBatchSize);
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+
+                redisQueueService.enqueueEncodedWebhooks(batch);
+
+                synchronized (lock) {
+                    head.commitRead(nextReadOffset);
+                    pendingRecords.addAndGet(-batch.size());
+                }
+                log.debug("Replayed {} spilled webhooks into Redis.", batch.size());
+            }
+            synchronized (lock) {
+                retireReplayedSegments();
+            }
+        } catch (Exception e) {
+            log.warn("Could not replay spilled webhooks into Redis, will retry: {}", e.getMessage());
+        }
+    }
+
+    // The tail segment is kept even when replayed, as it is still being appended to
+    private void retireReplayedSegments() throws IOException {
+        while (segments.size() > 1 && segments.peekFirst().isFullyRead()) {
+            Segment segment = segments.removeFirst();
+            Files.deleteIfExists(segment.path);
+            log.info("Deleted fully replayed spill segment {}.", segment.path.getFileName());
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().toList();
+        }
+        for (Path file : files) {
+            Segment segment = Segment.open(file);
+            if (segment == null) {
+                log.error("Ignoring unrecognized spill segment {}.", file);
+                continue;
+            }
+            segments.addLast(segment);
+            pendingRecords.addAndGet(segment.unreadRecords());
+            nextSegmentId = Math.max(nextSegmentId, segmentId(file) + 1);
+        }
+        retireReplayedSegments();
+    }
+
+    private static String segmentFileName(long id) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX);
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * One mapped segment file. Positions are byte offsets into the mapping.
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writeOffset;
+        private int readOffset;
+
+        private Segment(Path path, MappedByteBuffer buffer, int writeOffset, int readOffset) {
+            this.path = path;
+            this.buffer = buffer;
+            this.writeOffset = writeOffset;
+            this.readOffset = readOffset;
+        }
+
+        static Segment create(Path path, int size) throws IOException {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping stays valid after the channel is closed
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, SEGMENT_HEADER_BYTES);
+            return new Segment(path, buffer, SEGMENT_HEADER_BYTES, SEGMENT_HEADER_BYTES);
+        }
+
+        /**
+         * Maps an existing segment and finds the end of its intact records.
+         * @return The segment, or null if the file is not a spill segment.
+         */
+        static Segment open(Path path) throws IOException {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (channel.size() < SEGMENT_HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                    return null;
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+            if (buffer.getInt(0) != MAGIC) {
+                return null;
+            }
+
+            // A record cut short by a crash has a zero length or a bad checksum and ends the scan
+            int offset = SEGMENT_HEADER_BYTES;
+            while (offset + RECORD_HEADER_BYTES <= buffer.capacity()) {
+                int length = buffer.getInt(offset);
+                if (length <= 0 || length > buffer.capacity() - offset - RECORD_HEADER_BYTES
+                        || checksum(buffer, offset + RECORD_HEADER_BYTES, length) != buffer.getInt(offset + 4)) {
+                    break;
+                }
+                offset += RECORD_HEADER_BYTES + length;
+            }
+            int readOffset = Math.max(SEGMENT_HEADER_BYTES, Math.min(buffer.getInt(4), offset));
+            return new Segment(path, buffer, offset, readOffset);
+        }
+
+        int remaining() {
+            return buffer.capacity() - writeOffset;
+        }
+
+        boolean isFullyRead() {
+            return readOffset == writeOffset;
+        }
+
+        // The length is written last so a partially written record is never mistaken for a complete one
+        void append(byte[] payload) {
+            int payloadOffset = writeOffset + RECORD_HEADER_BYTES;
+            buffer.put(payloadOffset, payload, 0, payload.length);
+            buffer.putInt(writeOffset + 4, checksum(buffer, payloadOffset, payload.length));
+            buffer.putInt(writeOffset, payload.length);
+            writeOffset = payloadOffset + payload.length;
+        }
+
+        /**
+         * Copies up to {@code maxRecords} unread records into {@code out} without consuming them.
+         * @return The read offset to commit once the records have been replayed.
+         */
+        int read(List<byte[]> out, int maxRecords) {
+            int offset = readOffset;
+            while (offset < writeOffset && out.size() < maxRecords) {
+                int length = buffer.getInt(offset);
+                byte[] payload = new byte[length];
+                buffer.get(offset + RECORD_HEADER_BYTES, payload, 0, length);
+                out.add(payload);
+                offset += RECORD_HEADER_BYTES + length;
+            }
+            return offset;
+        }
+
+        void commitRead(int offset) {
+            readOffset = offset;
+            buffer.putInt(4, offset);
+        }
+
+        long unreadRecords() {
+            long count = 0;
+            for (int offset = readOffset; offset < writeOffset; offset += RECORD_HEADER_BYTES + buffer.getInt(offset)) {
+                count++;
+            }
+            return count;
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        private static int checksum(MappedByteBuffer buffer, int offset, int length) {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(offset, length));
+            return (int) crc.getValue();
+        }
+    }
+}
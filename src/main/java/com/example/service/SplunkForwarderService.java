@@ -1,80 +1,224 @@
 package com.example.streamsplunkwebhook.service;
 
 import com.example.streamsplunkwebhook.config.AppConfig;
+import com.example.streamsplunkwebhook.util.GzipCodec;
+import com.example.streamsplunkwebhook.util.LogSampler;
+import com.example.streamsplunkwebhook.util.WebhookEnvelope;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.net.MalformedURLException; // Import for URL parsing
-import java.net.URL; // Import for URL parsing
-import java.time.Instant;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class SplunkForwarderService {
 
     private static final Logger log = LoggerFactory.getLogger(SplunkForwarderService.class);
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final long IDLE_BACKOFF_MS = 5;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    static final String CHANNEL_HEADER = "X-Splunk-Request-Channel";
+    private static final String TIMEOUT_STATUS = "timeout";
 
     private final RedisQueueService redisQueueService;
-    private final WebClient webClient;
+    private final DeduplicationService deduplicationService;
+    private final RetryQueueService retryQueueService;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final HecLoadBalancer loadBalancer;
+    private final EventRouter eventRouter;
     private final AppConfig appConfig;
+    private final MeterRegistry meterRegistry;
+    private final LogSampler deliveredLogSampler;
+    // One per HEC endpoint when indexer acknowledgment is enabled, empty otherwise
+    private final Map<HecLoadBalancer.Node, HecAckTracker> ackTrackers = new HashMap<>();
+    // hec.request timers per endpoint, by response status; registered on the first response with that status
+    private final Map<HecLoadBalancer.Node, Map<String, Timer>> requestTimers = new HashMap<>();
+    private final String ackChannel;
+    private volatile boolean missingAckIdLogged;
+
+    private final ForwardingLane[] lanes;
+
+    private final DistributionSummary batchEvents;
+    private final DistributionSummary batchBytes;
+    private final Timer endToEndAge;
+    private final Counter deliveredEvents;
+    private final Counter failedEvents;
 
     private ExecutorService executorService;
     private volatile boolean running = true;
 
-    public SplunkForwarderService(RedisQueueService redisQueueService, WebClient.Builder webClientBuilder, AppConfig appConfig) {
+    public SplunkForwarderService(RedisQueueService redisQueueService, DeduplicationService deduplicationService,
+                                  RetryQueueService retryQueueService, AdaptiveConcurrencyLimiter concurrencyLimiter,
+                                  HecLoadBalancer loadBalancer, EventRouter eventRouter, MeterRegistry meterRegistry,
+                                  AppConfig appConfig) {
         this.redisQueueService = redisQueueService;
+        this.deduplicationService = deduplicationService;
+        this.retryQueueService = retryQueueService;
+        this.concurrencyLimiter = concurrencyLimiter;
         this.appConfig = appConfig;
-        // Set the base URL of the WebClient to just the scheme, host, and port
-        // The full path /services/collector/event will be used in the .uri() method
-        this.webClient = webClientBuilder.baseUrl(extractBaseUrl(appConfig.getSplunkHecUrl())).build();
+        this.meterRegistry = meterRegistry;
+        this.deliveredLogSampler = new LogSampler(appConfig.getLogSampleEvery());
+        this.loadBalancer = loadBalancer;
+        this.eventRouter = eventRouter;
+        for (HecLoadBalancer.Node node : loadBalancer.getNodes()) {
+            requestTimers.put(node, new ConcurrentHashMap<>());
+        }
+
+        this.lanes = new ForwardingLane[Math.max(1, appConfig.getWorkerConsumers())];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ForwardingLane(this::newBatch, this::deliver);
+        }
+
+        requireClaimOutlivesRequest(appConfig);
+        if (appConfig.isSplunkAckEnabled()) {
+            requireAckResolvedBeforeReclaim(appConfig);
+            String channel = appConfig.getSplunkAckChannel();
+            this.ackChannel = channel == null || channel.isBlank() ? UUID.randomUUID().toString() : channel.trim();
+            for (HecLoadBalancer.Node node : loadBalancer.getNodes()) {
+                ackTrackers.put(node, new HecAckTracker(node.getWebClient(), node.getBaseUrl(), ackChannel,
+                        appConfig.getSplunkHecToken(), appConfig.getSplunkAckPollIntervalMs(), appConfig.getSplunkAckTimeoutMs(),
+                        appConfig.getSplunkAckMaxIdsPerPoll(), appConfig.getSplunkRequestTimeoutMs(), meterRegistry,
+                        (batch, indexed) -> recordOutcome(batch, indexed ? batch.size() : 0)));
+            }
+        } else {
+            this.ackChannel = null;
+        }
+
+        this.batchEvents = DistributionSummary.builder("hec.batch.events")
+                .description("Events per HEC request")
+                .register(meterRegistry);
+        this.batchBytes = DistributionSummary.builder("hec.batch.bytes")
+                .description("HEC request body size as sent, after any compression")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.endToEndAge = Timer.builder("webhook.end_to_end.age")
+                .description("Time from ingest (envelope timestamp) until HEC accepted the event, or confirmed indexing it in ack mode")
+                .register(meterRegistry);
+        this.deliveredEvents = forwardedCounter(meterRegistry, "delivered");
+        this.failedEvents = forwardedCounter(meterRegistry, "failed");
+    }
+
+    private static Counter forwardedCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("webhook.forwarded")
+                .description("Events sent to HEC, by result")
+                .tag("result", result)
+                .register(meterRegistry);
     }
 
-    @PostConstruct
+    // Not at construction: the CDS training run exits before the application is ready
+    @EventListener(ApplicationReadyEvent.class)
     public void startWorker() {
-        log.info("Splunk Forwarder Worker started. Waiting for messages...");
+        log.info("Splunk Forwarder Worker started with {} consumers. Waiting for messages...", lanes.length);
         executorService = Executors.newSingleThreadExecutor();
         executorService.submit(this::pollQueueAndForward);
+        ackTrackers.values().forEach(HecAckTracker::start);
     }
 
     @PreDestroy
     public void stopWorker() {
         log.info("Shutting down Splunk Forwarder Worker...");
         running = false;
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
+        if (executorService != null) {
+            executorService.shutdown();
+            try {
+                if (!executorService.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    executorService.shutdownNow();
+                }
+            } catch (InterruptedException e) {
                 executorService.shutdownNow();
+                Thread.currentThread().interrupt();
             }
-        } catch (InterruptedException e) {
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
+        }
+        for (HecAckTracker ackTracker : ackTrackers.values()) {
+            ackTracker.stop(Duration.ofSeconds(SHUTDOWN_TIMEOUT_SECONDS));
         }
         log.info("Splunk Forwarder Worker stopped.");
     }
 
+    /**
+     * Fetch stage of the pipeline. A single thread pulls items from Redis and routes them to
+     * consumer lanes without blocking; the lanes send to HEC asynchronously, so a slow HEC response
+     * only holds up the lane it belongs to rather than the whole pipeline.
+     */
     private void pollQueueAndForward() {
+        long nextClaimNanos = System.nanoTime();
+        long nextRetryPollNanos = System.nanoTime();
         while (running) {
             try {
-                String rawWebhookData = redisQueueService.dequeueWebhook(appConfig.getPollIntervalMs() / 1000);
-                if (rawWebhookData != null) {
-                    processAndForward(rawWebhookData);
+                if (hasSaturatedLane()) {
+                    // A lane behind a slow HEC request has parked all it may hold; the other lanes keep
+                    // sending what they have, and fetching resumes once that lane catches up
+                    long now = System.nanoTime();
+                    for (ForwardingLane lane : lanes) {
+                        lane.flushIfExpired(now);
+                    }
+                    Thread.sleep(IDLE_BACKOFF_MS);
+                    continue;
+                }
+                if (!hasOpenBatches()) {
+                    // Nothing pending: block on Redis until the first event of the next batch arrives
+                    QueuedWebhook queuedWebhook = redisQueueService.dequeueWebhook(appConfig.getPollIntervalMs() / 1000);
+                    if (queuedWebhook != null) {
+                        route(Collections.singletonList(queuedWebhook));
+                    }
+                } else {
+                    // Batches are open: drain whatever is already queued without blocking
+                    List<QueuedWebhook> queuedWebhooks = redisQueueService.dequeueWebhooks(appConfig.getHecBatchMaxEvents());
+                    route(queuedWebhooks);
+                    if (queuedWebhooks.isEmpty()) {
+                        Thread.sleep(IDLE_BACKOFF_MS);
+                    }
+                }
+
+                long now = System.nanoTime();
+                for (ForwardingLane lane : lanes) {
+                    lane.flushIfExpired(now);
+                }
+
+                if (now - nextClaimNanos >= 0) {
+                    // Pick up entries that a crashed consumer read but never acknowledged
+                    route(redisQueueService.claimStaleWebhooks(appConfig.getHecBatchMaxEvents()));
+                    nextClaimNanos = now + TimeUnit.MILLISECONDS.toNanos(appConfig.getQueueStreamClaimIntervalMs());
                 }
+
+                if (retryQueueService.isEnabled() && now - nextRetryPollNanos >= 0) {
+                    // One batch of due retries per pass, so a large backlog of retries is interleaved with live traffic
+                    List<QueuedWebhook> dueRetries = retryQueueService.pollDueRetries(appConfig.getHecBatchMaxEvents());
+                    route(dueRetries);
+                    nextRetryPollNanos = dueRetries.size() < appConfig.getHecBatchMaxEvents()
+                            ? now + TimeUnit.MILLISECONDS.toNanos(appConfig.getRetryPollIntervalMs())
+                            : now;
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                running = false;
             } catch (Exception e) {
                 log.error("An unexpected error occurred in worker: {}", e.getMessage(), e);
                 try {
@@ -85,114 +229,437 @@ public class SplunkForwarderService {
                 }
             }
         }
+        drainLanes();
+    }
+
+    private boolean hasSaturatedLane() {
+        for (ForwardingLane lane : lanes) {
+            if (lane.isSaturated()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasOpenBatches() {
+        for (ForwardingLane lane : lanes) {
+            if (lane.hasOpenBatch()) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private void processAndForward(String rawWebhookData) {
-        String webhookId = "unknown";
+    private void drainLanes() {
+        for (ForwardingLane lane : lanes) {
+            lane.flush();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS - 1);
         try {
-            JsonNode webhookData = objectMapper.readTree(rawWebhookData);
-            webhookId = webhookData.path("x_webhook_id").asText();
+            for (ForwardingLane lane : lanes) {
+                if (!lane.awaitIdle(deadline)) {
+                    log.warn("Timed out waiting for in-flight Splunk requests to complete during shutdown.");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            log.info("Processing webhook ID: {}", webhookId);
+    /**
+     * Claims are renewed just before each HEC request, so they must outlive the request; otherwise
+     * a redelivered copy can claim the ID while the first copy is still being sent.
+     */
+    private static void requireClaimOutlivesRequest(AppConfig appConfig) {
+        long claimTtlMs = TimeUnit.SECONDS.toMillis(appConfig.getDeduplicationInFlightTtlSeconds());
+        if (claimTtlMs <= appConfig.getSplunkRequestTimeoutMs()) {
+            throw new IllegalStateException("app.worker.deduplication-in-flight-ttl-seconds (" + appConfig.getDeduplicationInFlightTtlSeconds()
+                    + ") must exceed app.splunk.request-timeout-ms (" + appConfig.getSplunkRequestTimeoutMs()
+                    + "); otherwise an event can be sent twice while its first request is still running.");
+        }
+    }
 
-            if (webhookId != null && redisQueueService.isWebhookProcessed(webhookId)) {
-                log.info("Skipping webhook ID {} because it was already processed (deduplication).", webhookId);
+    /**
+     * A stream entry still waiting for its ack is reclaimed by XAUTOCLAIM once it has been idle for
+     * claim-min-idle-ms, and then acknowledged as a duplicate because its dedup claim is held. If
+     * the ack later fails, only the retry set can bring the event back; without it the entry must
+     * not be reclaimable before the ack has resolved, or the event is lost.
+     */
+    private static void requireAckResolvedBeforeReclaim(AppConfig appConfig) {
+        if (!AppConfig.QUEUE_BACKEND_STREAM.equalsIgnoreCase(appConfig.getQueueBackend()) || appConfig.isRetryEnabled()) {
+            return;
+        }
+        long ackResolvedMs = appConfig.getSplunkRequestTimeoutMs() + appConfig.getSplunkAckTimeoutMs();
+        if (ackResolvedMs >= appConfig.getQueueStreamClaimMinIdleMs()) {
+            throw new IllegalStateException("With HEC indexer acknowledgment on the stream backend and retries disabled, "
+                    + "app.queue.stream.claim-min-idle-ms (" + appConfig.getQueueStreamClaimMinIdleMs()
+                    + ") must exceed app.splunk.request-timeout-ms plus app.splunk.ack.timeout-ms (" + ackResolvedMs
+                    + "); otherwise events whose acknowledgment times out are lost. Enable app.retry.enabled or raise claim-min-idle-ms.");
+        }
+    }
+
+    private HecBatch newBatch() {
+        return new HecBatch(appConfig.getHecBatchMaxEvents(), appConfig.getHecBatchMaxBytes(), appConfig.getHecBatchMaxLingerMs());
+    }
+
+    /**
+     * Converts dequeued items into HEC events, with the index and sourcetype their routing rule
+     * picks, and hands each to the lane owning its ordering key. Events the rules drop are
+     * acknowledged without being sent.
+     * Events with the same key always land in the same lane and are therefore sent in order.
+     * Deduplication claims for all items are taken in one round-trip before routing. Events
+     * delivered already are acknowledged; events another claim is delivering are left
+     * unacknowledged, so that a reclaimed stream entry stays pending until its holder is done.
+     */
+    private void route(List<QueuedWebhook> queuedWebhooks) {
+        if (queuedWebhooks.isEmpty()) {
+            return;
+        }
+        List<QueuedWebhook> decodedItems = new ArrayList<>(queuedWebhooks.size());
+        List<WebhookEnvelope> envelopes = new ArrayList<>(queuedWebhooks.size());
+        List<String> webhookIds = new ArrayList<>(queuedWebhooks.size());
+        List<Route> routes = new ArrayList<>(queuedWebhooks.size());
+        List<String> discardedReceipts = new ArrayList<>();
+
+        for (QueuedWebhook queuedWebhook : queuedWebhooks) {
+            try {
+                // Only the envelope header is decoded; the webhook body stays as raw bytes
+                WebhookEnvelope envelope = WebhookEnvelope.decode(queuedWebhook.getPayload());
+                log.debug("Processing webhook ID: {}", envelope.getWebhookId());
+                Route eventRoute = eventRouter.routeFor(envelope);
+                if (eventRoute == null) {
+                    // Dropped or sampled out by a routing rule; done with it before it costs a claim or HEC bandwidth
+                    discardedReceipts.add(queuedWebhook.getReceiptId());
+                    continue;
+                }
+                decodedItems.add(queuedWebhook);
+                envelopes.add(envelope);
+                routes.add(eventRoute);
+                webhookIds.add(envelope.getWebhookId());
+            } catch (Exception e) {
+                log.error("Error processing webhook data: {}", e.getMessage(), e);
+                // An item that cannot be decoded will never succeed; acknowledge it so it is not redelivered forever
+                discardedReceipts.add(queuedWebhook.getReceiptId());
+            }
+        }
+
+        String claimToken = deduplicationService.newClaimToken();
+        List<DeduplicationService.Claim> claims = webhookIds.isEmpty()
+                ? Collections.emptyList() : deduplicationService.tryClaim(webhookIds, claimToken);
+        for (int i = 0; i < decodedItems.size(); i++) {
+            String webhookId = webhookIds.get(i);
+            if (claims.get(i) == DeduplicationService.Claim.PROCESSED) {
+                log.debug("Skipping webhook ID {} because it was already processed (deduplication).", webhookId);
+                discardedReceipts.add(decodedItems.get(i).getReceiptId());
+                continue;
+            }
+            if (claims.get(i) == DeduplicationService.Claim.HELD) {
+                log.debug("Skipping webhook ID {} because another consumer is delivering it (deduplication).", webhookId);
+                continue;
+            }
+            QueuedWebhook item = decodedItems.get(i);
+            // Events sharing an ordering key share a lane, so they reach HEC in queue order
+            laneFor(redisQueueService.orderingKey(envelopes.get(i))).add(webhookId, claimToken, item.getReceiptId(),
+                    item.getAttempt(), new HecEventWriter(envelopes.get(i), routes.get(i)));
+        }
+        redisQueueService.acknowledgeWebhooks(discardedReceipts);
+    }
+
+    private ForwardingLane laneFor(String orderingKey) {
+        return lanes[Math.floorMod(orderingKey.hashCode(), lanes.length)];
+    }
+
+    /**
+     * Sends a sealed batch once the concurrency limiter grants a permit, to the endpoint the load
+     * balancer picks, and records the outcome per webhook ID once HEC has answered. The permit and
+     * the endpoint lease are released with the HEC outcome so the limiter, the circuit breaker and
+     * endpoint ejection can adapt. Result handling is moved off the Netty event loop
+     * because it makes blocking Redis calls. In ack mode an accepted batch is handed to the
+     * {@link HecAckTracker} instead, and its outcome is recorded once indexing is confirmed; the
+     * lane is free for its next batch as soon as HEC has answered.
+     *
+     * A batch may have waited in its lane for longer than its deduplication claims live, so they
+     * are renewed once the permit is granted, just before the request.
+     */
+    private Mono<Void> deliver(HecBatch batch) {
+        return concurrencyLimiter.acquire()
+                .flatMap(permit -> Mono.fromCallable(() -> renewClaims(batch))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(claimed -> claimed.isEmpty() ? Mono.<Void>empty() : send(permit, claimed))
+                        .doFinally(signal -> permit.release(AdaptiveConcurrencyLimiter.Outcome.IGNORED)))
+                .then();
+    }
+
+    private Mono<Void> send(AdaptiveConcurrencyLimiter.Permit permit, HecBatch batch) {
+        HecLoadBalancer.Lease lease = loadBalancer.select();
+        long start = System.nanoTime();
+        // Deferred so that an exception thrown while building the request still reaches doFinally
+        return Mono.defer(() -> forwardToSplunk(lease.getNode(), batch))
+                .doOnNext(result -> {
+                    permit.release(result.outcome);
+                    lease.release(result.outcome, TIMEOUT_STATUS.equals(result.status));
+                    recordRequest(lease.getNode(), result, System.nanoTime() - start);
+                })
+                .doFinally(signal -> lease.release(AdaptiveConcurrencyLimiter.Outcome.IGNORED, false))
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(result -> onResponse(lease.getNode(), batch, result))
+                .then();
+    }
+
+    /**
+     * Renews the batch's claims and drops the events whose claim was lost while they waited: those
+     * delivered meanwhile are acknowledged, those another consumer reclaimed are left to it.
+     * @return The batch to send, possibly empty; the same batch if every claim is still held.
+     */
+    private HecBatch renewClaims(HecBatch batch) {
+        List<DeduplicationService.Claim> claims;
+        try {
+            claims = deduplicationService.renewClaims(batch.getWebhookIds(), batch.getClaimTokens());
+        } catch (Exception e) {
+            // The claims taken at fetch time may still hold; deduplication is not worth failing the batch for
+            log.warn("Could not renew deduplication claims for a batch of {} events: {}", batch.size(), e.getMessage());
+            return batch;
+        }
+        if (!claims.contains(DeduplicationService.Claim.PROCESSED) && !claims.contains(DeduplicationService.Claim.HELD)) {
+            return batch;
+        }
+        HecBatch claimed = newBatch();
+        List<String> processedReceipts = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (claims.get(i) == DeduplicationService.Claim.CLAIMED) {
+                claimed.add(batch.getWebhookIds().get(i), batch.getClaimTokens().get(i), batch.getReceiptIds().get(i),
+                        batch.getAttempts().get(i), batch.getEvents().get(i));
+            } else if (claims.get(i) == DeduplicationService.Claim.PROCESSED) {
+                processedReceipts.add(batch.getReceiptIds().get(i));
+            }
+        }
+        log.warn("{} of {} events lost their deduplication claim while waiting to be sent; another copy has delivered or is delivering them.",
+                batch.size() - claimed.size(), batch.size());
+        redisQueueService.acknowledgeWebhooks(processedReceipts);
+        return claimed;
+    }
+
+    private void onResponse(HecLoadBalancer.Node node, HecBatch batch, DeliveryResult result) {
+        HecAckTracker ackTracker = ackTrackers.get(node);
+        if (ackTracker != null && result.delivered == batch.size()) {
+            if (result.ackId != null) {
+                // Accepted is not yet indexed: keep the claims until HEC confirms or the ack times out
+                deduplicationService.extendClaims(batch.getWebhookIds(), batch.getClaimTokens(),
+                        TimeUnit.MILLISECONDS.toSeconds(appConfig.getSplunkAckTimeoutMs() + appConfig.getSplunkAckPollIntervalMs()) + 1);
+                ackTracker.register(result.ackId, batch);
                 return;
             }
+            if (!missingAckIdLogged) {
+                missingAckIdLogged = true;
+                log.warn("HEC accepted a batch without returning an ackId; is useACK enabled on the token? Treating accepted batches as delivered.");
+            }
+        }
+        recordOutcome(batch, result.delivered);
+    }
 
-            boolean success = forwardToSplunk(webhookData);
+    private void recordRequest(HecLoadBalancer.Node node, DeliveryResult result, long elapsedNanos) {
+        requestTimers.get(node).computeIfAbsent(result.status, status -> Timer.builder("hec.request")
+                        .description("HEC request latency, by endpoint and response status")
+                        .tag("endpoint", node.getBaseUrl())
+                        .tag("status", status)
+                        .register(meterRegistry))
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
 
-            if (success && webhookId != null) {
-                redisQueueService.markWebhookAsProcessed(webhookId);
-                log.info("Successfully processed and marked webhook ID {} as processed.", webhookId);
-            } else if (!success) {
+    private void recordOutcome(HecBatch batch, int delivered) {
+        List<String> webhookIds = batch.getWebhookIds();
+        List<String> deliveredIds = webhookIds.subList(0, delivered);
+        List<String> failedIds = webhookIds.subList(delivered, webhookIds.size());
+
+        deduplicationService.markProcessed(deliveredIds);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < delivered; i++) {
+            endToEndAge.record(Math.max(0, now - batch.getEvents().get(i).getEnvelope().getTimestampMillis()), TimeUnit.MILLISECONDS);
+            if (deliveredLogSampler.sample()) {
+                log.info("Successfully processed and marked webhook ID {} as processed (logged for 1 in {} events).",
+                        deliveredIds.get(i), deliveredLogSampler.getEvery());
+            } else {
+                log.debug("Successfully processed and marked webhook ID {} as processed.", deliveredIds.get(i));
+            }
+        }
+        deliveredEvents.increment(delivered);
+        failedEvents.increment(failedIds.size());
+        // Failed IDs give up their claim so a redelivery is not mistaken for a duplicate
+        deduplicationService.release(failedIds, batch.getClaimTokens().subList(delivered, batch.size()));
+        boolean retryScheduled = false;
+        if (!failedIds.isEmpty() && retryQueueService.isEnabled()) {
+            try {
+                retryQueueService.scheduleRetries(failedItems(batch, delivered));
+                retryScheduled = true;
+            } catch (Exception e) {
+                log.error("Failed to schedule {} webhooks for retry: {}", failedIds.size(), e.getMessage(), e);
+            }
+        }
+        for (String webhookId : failedIds) {
+            if (retryScheduled) {
+                log.warn("Failed to send webhook ID {} to Splunk. Scheduled for retry.", webhookId);
+            } else {
                 log.error("Failed to send webhook ID {} to Splunk. Consider re-queueing if necessary.", webhookId);
             }
-        } catch (Exception e) {
-            log.error("Error processing or forwarding webhook data for ID {}: {}", webhookId, e.getMessage(), e);
         }
+        // Scheduled retries are held by the retry set, so their queue entries are released as well.
+        // Events neither delivered nor scheduled stay unacknowledged so a stream backend redelivers them via XAUTOCLAIM
+        redisQueueService.acknowledgeWebhooks(batch.getReceiptIds().subList(0, retryScheduled ? batch.size() : delivered));
     }
 
-    private boolean forwardToSplunk(JsonNode webhookData) {
-        // Construct Splunk HEC payload
-        ObjectNode splunkPayload = objectMapper.createObjectNode();
-        splunkPayload.put("event", webhookData.path("original_payload"));
-        splunkPayload.put("time", webhookData.path("timestamp").asLong());
-        splunkPayload.put("host", "stream-webhook-forwarder-java");
-        splunkPayload.put("source", "stream-chat-webhook");
-        splunkPayload.put("sourcetype", "stream:chat:webhook");
+    private List<QueuedWebhook> failedItems(HecBatch batch, int delivered) {
+        List<QueuedWebhook> failed = new ArrayList<>(batch.size() - delivered);
+        for (int i = delivered; i < batch.size(); i++) {
+            failed.add(new QueuedWebhook(batch.getEvents().get(i).getEnvelope().getData(),
+                    batch.getReceiptIds().get(i), batch.getAttempts().get(i) + 1));
+        }
+        return failed;
+    }
 
-        ObjectNode fields = objectMapper.createObjectNode();
-        fields.put("x_webhook_id", webhookData.path("x_webhook_id").asText());
-        fields.put("x_api_key", webhookData.path("x_api_key").asText());
-        splunkPayload.set("fields", fields);
+    /**
+     * Sends all events of the batch to Splunk HEC in a single non-blocking request.
+     * @param batch The batch to deliver.
+     * @return The number of leading events in the batch that HEC accepted, together with how HEC
+     *         responded. The count is the whole batch on success, 0 on a transport or server
+     *         error, and the events preceding the rejected one when HEC reports an
+     *         {@code invalid-event-number}.
+     */
+    private Mono<DeliveryResult> forwardToSplunk(HecLoadBalancer.Node node, HecBatch batch) {
+        byte[] requestBody = batch.toRequestBody();
+        // HEC accepts gzip request bodies; small ones are sent as is since the saving would not cover the CPU
+        boolean compress = appConfig.isSplunkCompressionEnabled() && requestBody.length >= appConfig.getSplunkCompressionMinBytes();
+        if (compress) {
+            int uncompressedLength = requestBody.length;
+            requestBody = GzipCodec.compress(requestBody, appConfig.getSplunkCompressionLevel());
+            log.debug("Compressed HEC request body from {} to {} bytes", uncompressedLength, requestBody.length);
+        }
 
-        String webhookIdForLogging = webhookData.path("x_webhook_id").asText();
+        log.debug("Attempting to send {} events ({} bytes) to Splunk HEC endpoint: {}", batch.size(), requestBody.length, node);
+        batchEvents.record(batch.size());
+        batchBytes.record(requestBody.length);
+
+        return node.getWebClient().post()
+                .uri("/services/collector/event") // Use the full path here
+                .header(HttpHeaders.AUTHORIZATION, "Splunk " + appConfig.getSplunkHecToken())
+                .headers(headers -> {
+                    if (compress) {
+                        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                    }
+                    if (ackChannel != null) {
+                        headers.set(CHANNEL_HEADER, ackChannel);
+                    }
+                })
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(requestBody)
+                .retrieve()
+                .onStatus(status -> status.isError(), response -> {
+                    return response.bodyToMono(String.class)
+                            .defaultIfEmpty("")
+                            .flatMap(errorBody -> {
+                                log.error("Splunk HEC returned error status {} for batch of {} events. Response Body: {}",
+                                        response.statusCode().value(), batch.size(), errorBody);
+                                return Mono.error(new WebClientResponseException(
+                                        "Splunk HEC Error",
+                                        response.statusCode().value(),
+                                        response.statusCode().toString(),
+                                        response.headers().asHttpHeaders(),
+                                        errorBody.getBytes(),
+                                        null
+                                ));
+                            });
+                })
+                .toEntity(String.class)
+                .timeout(Duration.ofMillis(appConfig.getSplunkRequestTimeoutMs()))
+                .map(response -> {
+                    log.debug("Successfully forwarded batch of {} events to Splunk. Response: {}", batch.size(), response.getBody());
+                    return new DeliveryResult(batch.size(), AdaptiveConcurrencyLimiter.Outcome.SUCCESS,
+                            String.valueOf(response.getStatusCode().value()), ackChannel != null ? ackId(response.getBody()) : null);
+                })
+                .onErrorResume(WebClientResponseException.class, e -> {
+                    log.error("WebClient HTTP error forwarding batch of {} events to Splunk: {} - {}",
+                              batch.size(), e.getStatusCode(), e.getResponseBodyAsString());
+                    log.error("Splunk Response Headers: {}", e.getHeaders());
+                    return Mono.just(new DeliveryResult(acceptedBeforeInvalidEvent(e, batch.size()), classify(e),
+                            String.valueOf(e.getStatusCode().value())));
+                })
+                .onErrorResume(e -> {
+                    log.error("Unexpected error forwarding batch of {} events to Splunk: {}", batch.size(), e.getMessage(), e);
+                    // A timeout means HEC is too slow to keep up; anything else means it could not be reached
+                    boolean timedOut = e instanceof TimeoutException;
+                    return Mono.just(new DeliveryResult(0, timedOut
+                            ? AdaptiveConcurrencyLimiter.Outcome.OVERLOAD
+                            : AdaptiveConcurrencyLimiter.Outcome.FAILURE, timedOut ? TIMEOUT_STATUS : "error"));
+                });
+    }
 
-        log.debug("Attempting to send to Splunk HEC URL: {}", appConfig.getSplunkHecUrl());
-        log.debug("Splunk HEC Token present: {}", (appConfig.getSplunkHecToken() != null && !appConfig.getSplunkHecToken().isEmpty()));
-        log.debug("Splunk HEC Token length: {}", (appConfig.getSplunkHecToken() != null ? appConfig.getSplunkHecToken().length() : 0));
-        log.debug("Request Body (first 500 chars): {}", splunkPayload.toString().substring(0, Math.min(splunkPayload.toString().length(), 500)));
+    /**
+     * HEC answers 503 (code 9, "Server is busy") when its queues are full, and some load balancers
+     * in front of it answer 429. Both mean "slow down"; other 5xx mean it is failing, and other
+     * 4xx are problems with the request rather than with HEC's health.
+     */
+    private AdaptiveConcurrencyLimiter.Outcome classify(WebClientResponseException e) {
+        int status = e.getStatusCode().value();
+        if (status == HttpStatus.SERVICE_UNAVAILABLE.value() || status == HttpStatus.TOO_MANY_REQUESTS.value()) {
+            return AdaptiveConcurrencyLimiter.Outcome.OVERLOAD;
+        }
+        return e.getStatusCode().is5xxServerError()
+                ? AdaptiveConcurrencyLimiter.Outcome.FAILURE
+                : AdaptiveConcurrencyLimiter.Outcome.REJECTED;
+    }
 
+    /**
+     * With useACK enabled, HEC answers a successful request with {@code {"text":"Success","code":0,"ackId":N}}.
+     */
+    private Long ackId(String responseBody) {
+        if (responseBody == null || responseBody.isEmpty()) {
+            return null;
+        }
         try {
-            String responseBody = webClient.post()
-                    .uri("/services/collector/event") // Use the full path here
-                    .header(HttpHeaders.AUTHORIZATION, "Splunk " + appConfig.getSplunkHecToken())
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(splunkPayload.toString())
-                    .retrieve()
-                    .onStatus(status -> status.isError(), response -> {
-                        return response.bodyToMono(String.class)
-                                .flatMap(errorBody -> {
-                                    log.error("Splunk HEC returned error status {} for webhook ID {}. Response Body: {}",
-                                            response.statusCode().value(), webhookIdForLogging, errorBody);
-                                    return Mono.error(new WebClientResponseException(
-                                            "Splunk HEC Error",
-                                            response.statusCode().value(),
-                                            response.statusCode().toString(),
-                                            response.headers().asHttpHeaders(),
-                                            errorBody.getBytes(),
-                                            null
-                                    ));
-                                });
-                    })
-                    .bodyToMono(String.class)
-                    .block();
-
-            log.info("Successfully forwarded webhook ID {} to Splunk. Response: {}", webhookIdForLogging, responseBody);
-            return true;
-        } catch (WebClientResponseException e) {
-            log.error("WebClient HTTP error forwarding to Splunk for webhook ID {}: {} - {}",
-                      webhookIdForLogging, e.getStatusCode(), e.getResponseBodyAsString());
-            log.error("Splunk Response Headers: {}", e.getHeaders());
-            return false;
-        } catch (Exception e) {
-            log.error("Unexpected error forwarding to Splunk for webhook ID {}: {}", webhookIdForLogging, e.getMessage(), e);
-            return false;
+            JsonNode ackId = objectMapper.readTree(responseBody).path("ackId");
+            return ackId.canConvertToLong() ? ackId.asLong() : null;
+        } catch (Exception parseError) {
+            log.debug("Could not parse Splunk HEC response: {}", parseError.getMessage());
+            return null;
         }
     }
 
     /**
-     * Extracts the scheme, host, and port from a full URL.
-     * Example: "https://http-inputs.example.com:8088/services/collector/event" -> "https://http-inputs.example.com:8088"
-     * @param fullUrl The complete URL string.
-     * @return The base URL (scheme://host:port).
+     * HEC processes a multi-event request in order and stops at the first malformed event,
+     * reporting its index as {@code invalid-event-number}. Events before that index were indexed.
      */
-    private String extractBaseUrl(String fullUrl) {
+    private int acceptedBeforeInvalidEvent(WebClientResponseException e, int batchSize) {
+        if (e.getStatusCode().value() != HttpStatus.BAD_REQUEST.value()) {
+            return 0;
+        }
         try {
-            URL url = new URL(fullUrl);
-            // Construct the base URL from scheme, host, and port
-            StringBuilder baseUrlBuilder = new StringBuilder();
-            baseUrlBuilder.append(url.getProtocol()).append("://").append(url.getHost());
-            if (url.getPort() != -1) {
-                baseUrlBuilder.append(":").append(url.getPort());
-            }
-            return baseUrlBuilder.toString();
-        } catch (MalformedURLException e) {
-            log.error("Malformed Splunk HEC URL provided: {}. Cannot extract base URL.", fullUrl, e);
-            // Fallback to the original full URL, but this might lead to continued 404s
-            // In a production app, you might want to throw a RuntimeException or handle this more robustly.
-            return fullUrl;
-        }
-    }
-}
\ No newline at end of file
+            JsonNode invalidEventNumber = objectMapper.readTree(e.getResponseBodyAsString()).path("invalid-event-number");
+            if (invalidEventNumber.isInt()) {
+                return Math.max(0, Math.min(batchSize, invalidEventNumber.asInt()));
+            }
+        } catch (Exception parseError) {
+            log.debug("Could not parse Splunk HEC error response: {}", parseError.getMessage());
+        }
+        return 0;
+    }
+
+    private static final class DeliveryResult {
+        private final int delivered;
+        private final AdaptiveConcurrencyLimiter.Outcome outcome;
+        // HTTP status code, or "timeout" / "error" when there was no response
+        private final String status;
+        // Indexer acknowledgment ID of an accepted request, in ack mode
+        private final Long ackId;
+
+        private DeliveryResult(int delivered, AdaptiveConcurrencyLimiter.Outcome outcome, String status) {
+            this(delivered, outcome, status, null);
+        }
+
+        private DeliveryResult(int delivered, AdaptiveConcurrencyLimiter.Outcome outcome, String status, Long ackId) {
+            this.delivered = delivered;
+            this.outcome = outcome;
+            this.status = status;
+            this.ackId = ackId;
+        }
+    }
+}
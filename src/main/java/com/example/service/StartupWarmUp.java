@@ -0,0 +1,150 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.config.AppConfig;
+import com.example.streamsplunkwebhook.util.GzipCodec;
+import com.example.streamsplunkwebhook.util.JsonValidator;
+import com.example.streamsplunkwebhook.util.SignatureVerifier;
+import com.example.streamsplunkwebhook.util.WebhookEnvelope;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the per-webhook hot paths on synthetic webhooks once the context has started, so that a
+ * freshly started replica has them JIT-compiled before it takes traffic: signature verification,
+ * JSON validation, envelope encoding and decoding, queue payload encoding and sharding, routing
+ * rule matching and HEC batch serialization (plus gzip when HEC compression is on).
+ *
+ * Nothing is written to Redis or sent to HEC, and the routing rules exercised are a scratch set
+ * with meters of their own. Spring Boot reports readiness (/actuator/health/readiness) only once
+ * application runners have returned, so the warm-up holds readiness back for at most
+ * {@code app.warmup.max-duration-ms}.
+ */
+@Component
+public class StartupWarmUp implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmUp.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int DISTINCT_WEBHOOKS = 32;
+    private static final String SCRATCH_RULES = "{\"rules\":["
+            + "{\"name\":\"typing\",\"match\":{\"type\":\"typing.*\"},\"action\":\"drop\"},"
+            + "{\"name\":\"messages\",\"match\":{\"type\":\"message.new\",\"channel.type\":[\"messaging\",\"team\"]},\"index\":\"warm_up\"},"
+            + "{\"name\":\"users\",\"match\":{\"type\":\"user.*\"},\"sample\":0.5}]}";
+
+    private final SignatureVerifier signatureVerifier;
+    private final RedisQueueService redisQueueService;
+    private final EventRouter eventRouter;
+    private final AppConfig appConfig;
+    private final boolean enabled;
+    private final int iterations;
+    private final long maxDurationMs;
+
+    public StartupWarmUp(SignatureVerifier signatureVerifier, RedisQueueService redisQueueService,
+                         EventRouter eventRouter, AppConfig appConfig) {
+        this.signatureVerifier = signatureVerifier;
+        this.redisQueueService = redisQueueService;
+        this.eventRouter = eventRouter;
+        this.appConfig = appConfig;
+        this.enabled = appConfig.isWarmupEnabled();
+        this.iterations = Math.max(0, appConfig.getWarmupIterations());
+        this.maxDurationMs = appConfig.getWarmupMaxDurationMs();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled || iterations == 0) {
+            log.info("Startup warm-up disabled.");
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            int completed = warmUp(start + TimeUnit.MILLISECONDS.toNanos(maxDurationMs));
+            log.info("Startup warm-up ran {} of {} iterations in {} ms.", completed, iterations,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            // A failed warm-up only costs latency on the first requests
+            log.warn("Startup warm-up failed after a partial run: {}", e.getMessage(), e);
+        }
+    }
+
+    private int warmUp(long deadlineNanos) throws Exception {
+        String apiSecret = appConfig.getStreamApiSecret();
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(apiSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[][] bodies = new byte[DISTINCT_WEBHOOKS][];
+        String[] signatures = new String[DISTINCT_WEBHOOKS];
+        for (int i = 0; i < DISTINCT_WEBHOOKS; i++) {
+            bodies[i] = syntheticBody(i);
+            signatures[i] = HexFormat.of().formatHex(mac.doFinal(bodies[i]));
+        }
+
+        RoutingRules scratchRules = RoutingRules.compile(objectMapper.readTree(SCRATCH_RULES),
+                eventRouter.getDefaultRoute(), new SimpleMeterRegistry());
+        Route defaultRoute = eventRouter.getDefaultRoute();
+        int batchSize = Math.max(1, appConfig.getHecBatchMaxEvents());
+        boolean compressHec = appConfig.isSplunkCompressionEnabled();
+        HecBatch batch = new HecBatch(batchSize, Long.MAX_VALUE, Long.MAX_VALUE);
+        long checksum = 0;
+
+        int i = 0;
+        for (; i < iterations && System.nanoTime() < deadlineNanos; i++) {
+            int n = i % DISTINCT_WEBHOOKS;
+            String webhookId = "warm-up-" + i;
+            if (!signatureVerifier.verifySignature(bodies[n], signatures[n], apiSecret) || !JsonValidator.isWellFormed(bodies[n])) {
+                throw new IllegalStateException("Synthetic webhook " + n + " did not pass the ingest checks");
+            }
+            byte[] envelope = WebhookEnvelope.encode(System.currentTimeMillis(), webhookId, "warm-up-key", bodies[n]);
+            byte[] stored = redisQueueService.encodePayload(envelope);
+            checksum += redisQueueService.shardOf(envelope);
+
+            WebhookEnvelope decoded = WebhookEnvelope.decode(redisQueueService.decodePayload(stored));
+            Route route = scratchRules.routeFor(decoded);
+            batch.add(decoded.getWebhookId(), null, null, 0, new HecEventWriter(decoded, route == null ? defaultRoute : route));
+            if (batch.isFull()) {
+                byte[] requestBody = batch.toRequestBody();
+                checksum += compressHec ? GzipCodec.compress(requestBody, appConfig.getSplunkCompressionLevel()).length : requestBody.length;
+                batch = new HecBatch(batchSize, Long.MAX_VALUE, Long.MAX_VALUE);
+            }
+        }
+        log.debug("Startup warm-up checksum {}.", checksum);
+        return i;
+    }
+
+    // Stream chat events of the three most common kinds, spread over a few channels
+    private static byte[] syntheticBody(int n) {
+        String channelId = "warm-up-" + (n % 8);
+        String json;
+        switch (n % 4) {
+            case 0:
+            case 1:
+                json = "{\"type\":\"message.new\",\"cid\":\"messaging:" + channelId + "\","
+                        + "\"channel\":{\"id\":\"" + channelId + "\",\"type\":\"messaging\"},"
+                        + "\"message\":{\"id\":\"msg-" + n + "\",\"type\":\"regular\",\"text\":\""
+                        + "Hello from the warm-up! ".repeat(8 + n) + "\","
+                        + "\"user\":{\"id\":\"user-" + n + "\",\"role\":\"user\"},\"attachments\":[],\"mentioned_users\":[]},"
+                        + "\"created_at\":\"2025-08-17T19:42:25.576116Z\"}";
+                break;
+            case 2:
+                json = "{\"type\":\"reaction.new\",\"cid\":\"messaging:" + channelId + "\","
+                        + "\"channel\":{\"id\":\"" + channelId + "\",\"type\":\"team\"},"
+                        + "\"reaction\":{\"type\":\"like\",\"message_id\":\"msg-" + n + "\",\"user_id\":\"user-" + n + "\",\"score\":1},"
+                        + "\"created_at\":\"2025-08-17T19:42:25.576116Z\"}";
+                break;
+            default:
+                json = "{\"type\":\"" + (n % 8 == 3 ? "typing.start" : "user.updated") + "\","
+                        + "\"user\":{\"id\":\"user-" + n + "\",\"name\":\"Warm-up User\",\"online\":true},"
+                        + "\"created_at\":\"2025-08-17T19:42:25.576116Z\"}";
+        }
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.streamsplunkwebhook.service;
+
+import io.lettuce.core.Consumer;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XAutoClaimArgs;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.models.stream.ClaimedMessages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue backend on Redis Streams, one per shard, read through a consumer group of the same name
+ * on each. Entries stay in the group's pending list until XACKed, so an entry read by a worker
+ * that dies before delivering it is reclaimed by another consumer with XAUTOCLAIM once it has
+ * been idle long enough; after a rebalance, that is the shard's new owner. This gives
+ * at-least-once delivery and lets several forwarder replicas share the streams.
+ *
+ * Receipt IDs have the form {@code <shard>/<entry ID>}.
+ */
+public class StreamQueueBackend implements WebhookQueueBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamQueueBackend.class);
+    private static final byte[] PAYLOAD_FIELD = "payload".getBytes(StandardCharsets.UTF_8);
+    private static final long CLAIM_TIMEOUT_SECONDS = 5;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final List<String> streamKeys;
+    private final byte[][] rawStreamKeys;
+    private final Map<String, Integer> shardsByKey = new HashMap<>();
+    private final String groupName;
+    private final org.springframework.data.redis.connection.stream.Consumer consumer;
+    private final long maxLength;
+    private final Duration claimMinIdle;
+
+    // Shards this consumer reads from
+    private volatile int[] ownedShards;
+    // XAUTOCLAIM scan cursor per shard; "0-0" restarts the scan from the beginning of the pending list
+    private final String[] claimCursors;
+    // Owned shard the next claim starts with, so every owned shard gets its turn
+    private int nextClaimShard;
+
+    public StreamQueueBackend(RedisTemplate<String, String> redisTemplate, List<String> streamKeys, String groupName,
+                              String consumerName, long maxLength, long claimMinIdleMs) {
+        this.redisTemplate = redisTemplate;
+        this.streamKeys = streamKeys;
+        this.rawStreamKeys = new byte[streamKeys.size()][];
+        this.claimCursors = new String[streamKeys.size()];
+        int[] all = new int[streamKeys.size()];
+        for (int shard = 0; shard < rawStreamKeys.length; shard++) {
+            rawStreamKeys[shard] = streamKeys.get(shard).getBytes(StandardCharsets.UTF_8);
+            shardsByKey.put(streamKeys.get(shard), shard);
+            claimCursors[shard] = "0-0";
+            all[shard] = shard;
+        }
+        this.ownedShards = all;
+        this.groupName = groupName;
+        this.consumer = org.springframework.data.redis.connection.stream.Consumer.from(groupName, consumerName);
+        this.maxLength = maxLength;
+        this.claimMinIdle = Duration.ofMillis(claimMinIdleMs);
+        for (String streamKey : streamKeys) {
+            createGroupIfMissing(streamKey);
+        }
+    }
+
+    @Override
+    public int getShardCount() {
+        return rawStreamKeys.length;
+    }
+
+    @Override
+    public void assignShards(Collection<Integer> shards) {
+        int[] owned = new int[shards.size()];
+        int i = 0;
+        for (int shard : shards) {
+            owned[i++] = shard;
+        }
+        ownedShards = owned;
+    }
+
+    private void createGroupIfMissing(String streamKey) {
+        try {
+            // Created with MKSTREAM, starting from the beginning so entries added before the group existed are read
+            redisTemplate.opsForStream().createGroup(streamKey, ReadOffset.from("0"), groupName);
+            log.info("Created consumer group {} on stream {}.", groupName, streamKey);
+        } catch (Exception e) {
+            if (e.getMessage() != null && e.getMessage().contains("BUSYGROUP")) {
+                log.debug("Consumer group {} already exists on stream {}.", groupName, streamKey);
+            } else {
+                log.warn("Could not create consumer group {} on stream {}: {}", groupName, streamKey, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void enqueue(byte[] webhookPayload, int shard) {
+        // XADD with approximate MAXLEN trimming keeps the stream bounded at no extra round-trip
+        RecordId recordId = redisTemplate.execute((RedisCallback<RecordId>) connection ->
+                connection.streamCommands().xAdd(
+                        MapRecord.create(rawStreamKeys[shard], Map.of(PAYLOAD_FIELD, webhookPayload)),
+                        XAddOptions.maxlen(maxLength).approximateTrimming(true)));
+        log.debug("Webhook queued successfully. Stream entry ID: {}", recordId);
+    }
+
+    @Override
+    public void enqueueAll(List<byte[]> webhookPayloads, int[] shards) {
+        // XADD has no multi-entry form, so the adds are pipelined into one round-trip
+        XAddOptions options = XAddOptions.maxlen(maxLength).approximateTrimming(true);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < webhookPayloads.size(); i++) {
+                connection.streamCommands().xAdd(
+                        MapRecord.create(rawStreamKeys[shards[i]], Map.of(PAYLOAD_FIELD, webhookPayloads.get(i))),
+                        options);
+            }
+            return null;
+        });
+        log.debug("Queued {} webhooks in one pipelined write.", webhookPayloads.size());
+    }
+
+    @Override
+    public QueuedWebhook dequeue(long timeoutSeconds) {
+        if (timeoutSeconds <= 0) {
+            List<QueuedWebhook> items = dequeue(1);
+            return items.isEmpty() ? null : items.get(0);
+        }
+        List<QueuedWebhook> items = read(StreamReadOptions.empty().count(1).block(Duration.ofSeconds(timeoutSeconds)));
+        if (items.isEmpty()) {
+            log.debug("No item found in Redis stream after {} seconds.", timeoutSeconds);
+            return null;
+        }
+        return items.get(0);
+    }
+
+    @Override
+    public List<QueuedWebhook> dequeue(int maxItems) {
+        if (maxItems <= 0) {
+            return Collections.emptyList();
+        }
+        return read(StreamReadOptions.empty().count(maxItems));
+    }
+
+    // One XREADGROUP over all owned shards; COUNT applies per stream
+    @SuppressWarnings("unchecked")
+    private List<QueuedWebhook> read(StreamReadOptions readOptions) {
+        int[] shards = ownedShards;
+        if (shards.length == 0) {
+            return Collections.emptyList();
+        }
+        StreamOffset<byte[]>[] offsets = new StreamOffset[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            offsets[i] = StreamOffset.create(rawStreamKeys[shards[i]], ReadOffset.lastConsumed());
+        }
+        List<ByteRecord> records = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xReadGroup(consumer, readOptions, offsets));
+        if (records == null || records.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<QueuedWebhook> items = new ArrayList<>(records.size());
+        for (ByteRecord record : records) {
+            String receiptId = receiptId(shardsByKey.get(new String(record.getStream(), StandardCharsets.UTF_8)),
+                    record.getId().getValue());
+            byte[] payload = payloadOf(record.getValue());
+            if (payload == null) {
+                // Not ours; acknowledge so it does not keep coming back through XAUTOCLAIM
+                acknowledge(List.of(receiptId));
+                continue;
+            }
+            items.add(new QueuedWebhook(payload, receiptId));
+        }
+        log.debug("Read {} entries from {} Redis stream shard(s).", items.size(), shards.length);
+        return items;
+    }
+
+    private static String receiptId(int shard, String entryId) {
+        return shard + "/" + entryId;
+    }
+
+    @Override
+    public void acknowledge(List<String> receiptIds) {
+        if (receiptIds.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<String>> entryIdsByShard = new HashMap<>();
+        for (String receiptId : receiptIds) {
+            int separator = receiptId.indexOf('/');
+            entryIdsByShard.computeIfAbsent(Integer.parseInt(receiptId.substring(0, separator)), shard -> new ArrayList<>())
+                    .add(receiptId.substring(separator + 1));
+        }
+        // One XACK per shard for the whole batch
+        for (Map.Entry<Integer, List<String>> shard : entryIdsByShard.entrySet()) {
+            redisTemplate.opsForStream().acknowledge(streamKeys.get(shard.getKey()), groupName,
+                    shard.getValue().toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Claims from the owned shards in turn until {@code maxItems} are found or every owned shard
+     * has been scanned once.
+     */
+    @Override
+    public List<QueuedWebhook> claimStale(int maxItems) {
+        int[] shards = ownedShards;
+        if (maxItems <= 0 || shards.length == 0) {
+            return Collections.emptyList();
+        }
+        List<QueuedWebhook> items = new ArrayList<>();
+        int start = Math.floorMod(nextClaimShard++, shards.length);
+        for (int i = 0; i < shards.length && items.size() < maxItems; i++) {
+            items.addAll(claimStale(shards[(start + i) % shards.length], maxItems - items.size()));
+        }
+        return items;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<QueuedWebhook> claimStale(int shard, int maxItems) {
+        byte[] rawStreamKey = rawStreamKeys[shard];
+        // XAUTOCLAIM is not exposed by Spring Data Redis, so go through the native Lettuce connection
+        ClaimedMessages<byte[], byte[]> claimed = redisTemplate.execute((RedisCallback<ClaimedMessages<byte[], byte[]>>) connection -> {
+            RedisClusterAsyncCommands<byte[], byte[]> commands = (RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+            XAutoClaimArgs<byte[]> args = XAutoClaimArgs.Builder
+                    .xautoclaim(Consumer.from(groupName.getBytes(StandardCharsets.UTF_8), consumer.getName().getBytes(StandardCharsets.UTF_8)),
+                            claimMinIdle, claimCursors[shard])
+                    .count(maxItems);
+            try {
+                return commands.xautoclaim(rawStreamKey, args).get(CLAIM_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RedisSystemException("Interrupted while claiming stale stream entries", e);
+            } catch (Exception e) {
+                throw new RedisSystemException("Failed to claim stale stream entries: " + e.getMessage(), e);
+            }
+        });
+        if (claimed == null) {
+            return Collections.emptyList();
+        }
+
+        claimCursors[shard] = claimed.getId();
+        List<QueuedWebhook> items = new ArrayList<>(claimed.getMessages().size());
+        for (StreamMessage<byte[], byte[]> message : claimed.getMessages()) {
+            byte[] payload = payloadOf(message.getBody());
+            if (payload == null) {
+                continue;
+            }
+            items.add(new QueuedWebhook(payload, receiptId(shard, message.getId())));
+        }
+        if (!items.isEmpty()) {
+            log.info("Claimed {} stale entries from stream {} for consumer {}.", items.size(), streamKeys.get(shard), consumer.getName());
+        }
+        return items;
+    }
+
+    // byte[] map keys compare by identity, so the payload field has to be found by content
+    private byte[] payloadOf(Map<byte[], byte[]> fields) {
+        if (fields == null) {
+            return null;
+        }
+        for (Map.Entry<byte[], byte[]> field : fields.entrySet()) {
+            if (Arrays.equals(field.getKey(), PAYLOAD_FIELD)) {
+                return field.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sum over all shards of the group's lag (entries not yet delivered to any consumer, Redis 7+)
+     * plus its pending entries. XLEN is not used as is because the stream keeps acknowledged
+     * entries until trimmed; it is only the fallback when the server does not report lag.
+     */
+    @Override
+    public long depth() {
+        long depth = 0;
+        for (String streamKey : streamKeys) {
+            depth += depth(streamKey);
+        }
+        return depth;
+    }
+
+    private long depth(String streamKey) {
+        StreamInfo.XInfoGroups groups = redisTemplate.opsForStream().groups(streamKey);
+        for (StreamInfo.XInfoGroup group : groups) {
+            if (groupName.equals(group.groupName())) {
+                Object lag = group.getRaw().get("lag");
+                if (lag instanceof Number) {
+                    return ((Number) lag).longValue() + group.pendingCount();
+                }
+            }
+        }
+        Long length = redisTemplate.opsForStream().size(streamKey);
+        return length == null ? 0 : length;
+    }
+}
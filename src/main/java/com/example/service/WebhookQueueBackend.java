@@ -0,0 +1,53 @@
+package com.example.streamsplunkwebhook.service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Storage strategy behind {@link RedisQueueService}. The queue is split into one or more shards,
+ * each a Redis key of its own; writes name the shard, reads only cover the shards assigned to
+ * this consumer. Items handed out by the dequeue methods must be passed to
+ * {@link #acknowledge(List)} once they no longer need to be redelivered.
+ */
+public interface WebhookQueueBackend {
+
+    int getShardCount();
+
+    /**
+     * Sets the shards the dequeue and claim methods read from. All shards until first called.
+     */
+    void assignShards(Collection<Integer> shards);
+
+    void enqueue(byte[] webhookPayload, int shard);
+
+    /**
+     * Writes all payloads in one round-trip, preserving their order within each shard.
+     * @param shards The shard of each payload, index-aligned with {@code webhookPayloads}.
+     */
+    void enqueueAll(List<byte[]> webhookPayloads, int[] shards);
+
+    /**
+     * Blocks for up to {@code timeoutSeconds} waiting for a single item.
+     * @return The item, or null if none arrived in time.
+     */
+    QueuedWebhook dequeue(long timeoutSeconds);
+
+    /**
+     * Non-blocking read of up to {@code maxItems} items in one round-trip.
+     */
+    List<QueuedWebhook> dequeue(int maxItems);
+
+    void acknowledge(List<String> receiptIds);
+
+    /**
+     * Takes over items that were handed to another consumer but never acknowledged,
+     * e.g. because that consumer crashed. Backends without delivery tracking return nothing.
+     */
+    List<QueuedWebhook> claimStale(int maxItems);
+
+    /**
+     * Number of items waiting to be forwarded across all shards, including those read but not
+     * yet acknowledged.
+     */
+    long depth();
+}
@@ -0,0 +1,50 @@
+package com.example.streamsplunkwebhook.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip helpers for HEC request bodies and queued payloads. Gzip data is recognised by its two
+ * magic bytes, which can never start a webhook envelope or a JSON document.
+ */
+public final class GzipCodec {
+
+    private static final int MAGIC_0 = 0x1f;
+    private static final int MAGIC_1 = 0x8b;
+
+    private GzipCodec() {
+    }
+
+    public static byte[] compress(byte[] data, int level) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gzip = new LevelGzipOutputStream(out, level)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            // Cannot happen with an in-memory stream
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] decompress(byte[] data) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data), 8192)) {
+            return gzip.readAllBytes();
+        }
+    }
+
+    public static boolean isCompressed(byte[] data) {
+        return data.length >= 2 && (data[0] & 0xFF) == MAGIC_0 && (data[1] & 0xFF) == MAGIC_1;
+    }
+
+    // GZIPOutputStream has no level parameter, but exposes its Deflater to subclasses
+    private static class LevelGzipOutputStream extends GZIPOutputStream {
+        LevelGzipOutputStream(ByteArrayOutputStream out, int level) throws IOException {
+            super(out, 8192);
+            def.setLevel(level);
+        }
+    }
+}
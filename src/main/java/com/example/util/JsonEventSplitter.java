@@ -0,0 +1,252 @@
+package com.example.streamsplunkwebhook.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits a bulk request body into its events while reading it, so that the body is never held
+ * as one buffer. Two layouts are accepted, told apart by the first non-blank byte:
+ *
+ * <ul>
+ *   <li>A JSON array: each top-level element is one event. Elements are delimited by tracking
+ *       nesting and string literals; a broken array structure fails the whole body.</li>
+ *   <li>NDJSON: each non-blank line is one event. A broken line only affects that event.</li>
+ * </ul>
+ *
+ * Events are returned as their raw bytes and are not validated here. Reading stops with a
+ * {@link BodyTooLargeException} as soon as the body exceeds its total size limit, so no more
+ * than that is ever read or buffered.
+ */
+public final class JsonEventSplitter {
+
+    private enum Mode { UNKNOWN, ARRAY, LINES, DONE }
+
+    private final InputStream in;
+    private final int maxEventBytes;
+    private final long maxBodyBytes;
+    private long bytesRead;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+    private Mode mode = Mode.UNKNOWN;
+    private boolean firstElement = true;
+
+    public JsonEventSplitter(InputStream in, int maxEventBytes, long maxBodyBytes) {
+        this.in = in;
+        this.maxEventBytes = Math.max(1, maxEventBytes);
+        this.maxBodyBytes = Math.max(1, maxBodyBytes);
+    }
+
+    /**
+     * @return The next event, or null once the body is exhausted.
+     * @throws BodyTooLargeException once the body exceeds its total size limit.
+     * @throws IOException if reading fails or a JSON array body is structurally broken.
+     */
+    public Event next() throws IOException {
+        if (mode == Mode.UNKNOWN) {
+            int first = skipWhitespace();
+            if (first == -1) {
+                mode = Mode.DONE;
+            } else if (first == '[') {
+                mode = Mode.ARRAY;
+            } else {
+                mode = Mode.LINES;
+                position--;
+            }
+        }
+        switch (mode) {
+            case ARRAY:
+                return nextElement();
+            case LINES:
+                return nextLine();
+            default:
+                return null;
+        }
+    }
+
+    private Event nextLine() throws IOException {
+        while (true) {
+            EventBuffer event = new EventBuffer();
+            boolean carriageReturn = false;
+            int b;
+            while ((b = read()) != -1 && b != '\n') {
+                // A CR is only written once it turns out not to be part of a CRLF line ending
+                if (carriageReturn) {
+                    event.write('\r');
+                }
+                carriageReturn = b == '\r';
+                if (!carriageReturn) {
+                    event.write(b);
+                }
+            }
+            if (!event.isBlank()) {
+                return event.toEvent();
+            }
+            if (b == -1) {
+                mode = Mode.DONE;
+                return null;
+            }
+        }
+    }
+
+    private Event nextElement() throws IOException {
+        int b = skipWhitespace();
+        if (firstElement) {
+            firstElement = false;
+            if (b == ']') {
+                return finishArray();
+            }
+        } else if (b == ',') {
+            b = skipWhitespace();
+        } else if (b == ']') {
+            return finishArray();
+        } else {
+            throw malformed(b == -1 ? "unterminated array" : "expected ',' or ']' between events");
+        }
+        if (b == -1 || b == ']' || b == ',') {
+            throw malformed("missing event in array");
+        }
+
+        EventBuffer event = new EventBuffer();
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        while (true) {
+            if (!inString && depth == 0 && event.size() > 0 && (b == ',' || b == ']' || isWhitespace(b))) {
+                // End of a scalar element; the separator is read again by the next call
+                position--;
+                return event.toEvent();
+            }
+            event.write(b);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (--depth == 0) {
+                    return event.toEvent();
+                }
+                if (depth < 0) {
+                    throw malformed("unbalanced brackets");
+                }
+            }
+            b = read();
+            if (b == -1) {
+                throw malformed("unterminated array");
+            }
+        }
+    }
+
+    private Event finishArray() throws IOException {
+        mode = Mode.DONE;
+        if (skipWhitespace() != -1) {
+            throw malformed("unexpected content after the closing ']'");
+        }
+        return null;
+    }
+
+    private int skipWhitespace() throws IOException {
+        int b;
+        do {
+            b = read();
+        } while (b != -1 && isWhitespace(b));
+        return b;
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            int n = in.read(buffer, 0, buffer.length);
+            if (n <= 0) {
+                return -1;
+            }
+            bytesRead += n;
+            if (bytesRead > maxBodyBytes) {
+                throw new BodyTooLargeException(maxBodyBytes);
+            }
+            position = 0;
+            limit = n;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * The body is larger than the limit given to the splitter.
+     */
+    public static final class BodyTooLargeException extends IOException {
+        public BodyTooLargeException(long maxBodyBytes) {
+            super("Bulk body exceeds the limit of " + maxBodyBytes + " bytes");
+        }
+    }
+
+    private static IOException malformed(String reason) {
+        return new IOException("Malformed bulk body: " + reason);
+    }
+
+    /**
+     * Collects one event, dropping its bytes once it grows past the size limit.
+     */
+    private final class EventBuffer {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        private int size;
+        private boolean blank = true;
+
+        private void write(int b) {
+            size++;
+            if (!isWhitespace(b)) {
+                blank = false;
+            }
+            if (size <= maxEventBytes) {
+                bytes.write(b);
+            }
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private boolean isBlank() {
+            return blank;
+        }
+
+        private Event toEvent() {
+            return size > maxEventBytes ? new Event(null) : new Event(bytes.toByteArray());
+        }
+    }
+
+    /**
+     * One event of the body.
+     */
+    public static final class Event {
+
+        private final byte[] body;
+
+        private Event(byte[] body) {
+            this.body = body;
+        }
+
+        /**
+         * @return The raw event bytes, or null if the event exceeded the size limit.
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        public boolean isTooLarge() {
+            return body == null;
+        }
+    }
+}
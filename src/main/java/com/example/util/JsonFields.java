@@ -0,0 +1,128 @@
+package com.example.streamsplunkwebhook.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Streaming lookups of single fields in raw JSON bodies, without building a tree.
+ */
+public final class JsonFields {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private JsonFields() {
+    }
+
+    /**
+     * Finds a string field of the top-level object, skipping nested values unread. Parsing stops
+     * as soon as the field is found.
+     * @return The field's value, or null if the body is not an object, lacks the field, or the
+     *         field is not a string.
+     */
+    public static String topLevelString(byte[] body, String fieldName) {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                boolean match = fieldName.equals(parser.currentName());
+                JsonToken value = parser.nextToken();
+                if (match) {
+                    return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds a scalar at a path of nested object fields, e.g. {@code ["channel", "id"]}, in the
+     * JSON held in {@code data[offset, offset + length)}. Everything off the path is skipped unread.
+     * @return The value as text if it is a string or a number, otherwise null.
+     */
+    public static String scalarAt(byte[] data, int offset, int length, String[] path) {
+        try (JsonParser parser = jsonFactory.createParser(data, offset, length)) {
+            JsonToken token = parser.nextToken();
+            for (String fieldName : path) {
+                if (token != JsonToken.START_OBJECT) {
+                    return null;
+                }
+                token = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    boolean match = fieldName.equals(parser.currentName());
+                    JsonToken value = parser.nextToken();
+                    if (match) {
+                        token = value;
+                        break;
+                    }
+                    parser.skipChildren();
+                }
+                if (token == null) {
+                    return null;
+                }
+            }
+            return token == JsonToken.VALUE_STRING || token.isNumeric() ? parser.getText() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the scalars at several paths in one pass over the JSON held in
+     * {@code data[offset, offset + length)}. Only objects on one of the paths are descended into;
+     * everything else is skipped unread.
+     * @return The values, index-aligned with {@code paths}; null where a path is missing or does
+     *         not end at a string or a number.
+     */
+    public static String[] scalarsAt(byte[] data, int offset, int length, String[][] paths) {
+        String[] values = new String[paths.length];
+        if (paths.length == 0) {
+            return values;
+        }
+        int[] wanted = new int[paths.length];
+        for (int i = 0; i < wanted.length; i++) {
+            wanted[i] = i;
+        }
+        try (JsonParser parser = jsonFactory.createParser(data, offset, length)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                collect(parser, paths, 0, wanted, values);
+            }
+        } catch (IOException e) {
+            // Values found before the error are kept
+        }
+        return values;
+    }
+
+    // Walks the fields of the current object; wanted holds the paths still live at this depth
+    private static void collect(JsonParser parser, String[][] paths, int depth, int[] wanted, String[] values)
+            throws IOException {
+        int[] nested = new int[wanted.length];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            int nestedCount = 0;
+            for (int path : wanted) {
+                if (!name.equals(paths[path][depth])) {
+                    continue;
+                }
+                if (paths[path].length > depth + 1) {
+                    nested[nestedCount++] = path;
+                } else if (value == JsonToken.VALUE_STRING || value.isNumeric()) {
+                    values[path] = parser.getText();
+                }
+            }
+            if (nestedCount > 0 && value == JsonToken.START_OBJECT) {
+                collect(parser, paths, depth + 1, Arrays.copyOf(nested, nestedCount), values);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+}
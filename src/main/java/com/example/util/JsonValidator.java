@@ -0,0 +1,33 @@
+package com.example.streamsplunkwebhook.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * Cheap well-formedness check for raw JSON bodies that are stored and forwarded verbatim.
+ */
+public final class JsonValidator {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private JsonValidator() {
+    }
+
+    /**
+     * Validates the body by streaming through its tokens; nothing is materialized.
+     * @return true if the body is exactly one JSON value with nothing trailing it.
+     */
+    public static boolean isWellFormed(byte[] body) {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() == null) {
+                return false;
+            }
+            parser.skipChildren();
+            return parser.nextToken() == null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.streamsplunkwebhook.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets one in every N calls through. Used for INFO logs on per-event paths, whose volume would
+ * otherwise cost throughput; the full counts are in the metrics.
+ */
+public final class LogSampler {
+
+    private final long every;
+    private final AtomicLong calls = new AtomicLong();
+
+    public LogSampler(long every) {
+        this.every = Math.max(1, every);
+    }
+
+    /**
+     * @return true for the first call and every N-th one after it.
+     */
+    public boolean sample() {
+        return every == 1 || calls.getAndIncrement() % every == 0;
+    }
+
+    public long getEvery() {
+        return every;
+    }
+}
@@ -6,64 +6,145 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.util.Formatter;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 
 @Component
 public class SignatureVerifier {
 
     private static final Logger log = LoggerFactory.getLogger(SignatureVerifier.class);
     private static final String HMAC_SHA256_ALGORITHM = "HmacSHA256";
+    private static final int HMAC_SHA256_LENGTH = 32;
 
-    public boolean verifySignature(String rawBody, String signature, String apiSecret) {
+    // A keyed Mac per request thread; Mac is not thread-safe but is reusable after doFinal
+    private final ThreadLocal<KeyedMac> keyedMac = new ThreadLocal<>();
+
+    /**
+     * Verifies an X-Signature header against the HMAC-SHA256 of the raw request body.
+     * The hex signature is decoded to bytes and compared in constant time, so no hex string
+     * is built for the calculated digest.
+     */
+    public boolean verifySignature(byte[] rawBody, String signature, String apiSecret) {
         if (rawBody == null || signature == null || apiSecret == null) {
             log.warn("Missing rawBody, signature, or apiSecret for verification.");
             return false;
         }
 
-        try {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(apiSecret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256_ALGORITHM);
-            Mac mac = Mac.getInstance(HMAC_SHA256_ALGORITHM);
-            mac.init(secretKeySpec);
-
-            byte[] hmacSha256 = mac.doFinal(rawBody.getBytes(StandardCharsets.UTF_8));
-            String calculatedSignature = toHexString(hmacSha256);
-
-            log.debug("Received X-Signature: {}", signature);
-            log.debug("Calculated Signature: {}", calculatedSignature);
-            log.debug("API Secret used: {}", apiSecret);
-            log.debug("Raw Body (decoded): {}", rawBody);
-
-            // Use constant-time comparison to prevent timing attacks
-            return MessageDigestComparator.isEqual(calculatedSignature.getBytes(StandardCharsets.UTF_8), signature.getBytes(StandardCharsets.UTF_8));
+        byte[] expected = decodeHex(signature);
+        if (expected == null) {
+            return false;
+        }
 
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+        try {
+            byte[] calculated = macFor(apiSecret).doFinal(rawBody);
+            // Constant-time comparison to prevent timing attacks
+            return MessageDigest.isEqual(calculated, expected);
+        } catch (GeneralSecurityException e) {
             log.error("Error during signature verification: {}", e.getMessage(), e);
             return false;
         }
     }
 
-    private String toHexString(byte[] bytes) {
-        Formatter formatter = new Formatter();
-        for (byte b : bytes) {
-            formatter.format("%02x", b);
+    /**
+     * Wraps a request body that is consumed incrementally, computing its HMAC-SHA256 as it is
+     * read. Call {@link VerifyingInputStream#matches(String)} once the body has been read to the end.
+     */
+    public VerifyingInputStream verifying(InputStream body, String apiSecret) throws GeneralSecurityException {
+        // A Mac of its own: an abandoned stream must not leave partial input in the per-thread Mac
+        Mac mac = Mac.getInstance(HMAC_SHA256_ALGORITHM);
+        mac.init(new SecretKeySpec(apiSecret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256_ALGORITHM));
+        return new VerifyingInputStream(body, mac);
+    }
+
+    private Mac macFor(String apiSecret) throws GeneralSecurityException {
+        KeyedMac cached = keyedMac.get();
+        if (cached == null || !cached.secret.equals(apiSecret)) {
+            Mac mac = Mac.getInstance(HMAC_SHA256_ALGORITHM);
+            mac.init(new SecretKeySpec(apiSecret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256_ALGORITHM));
+            cached = new KeyedMac(apiSecret, mac);
+            keyedMac.set(cached);
         }
-        return formatter.toString();
+        return cached.mac;
     }
 
-    // Simple constant-time comparison for security (prevents timing attacks)
-    private static class MessageDigestComparator {
-        public static boolean isEqual(byte[] digest1, byte[] digest2) {
-            if (digest1.length != digest2.length) {
-                return false;
+    /**
+     * Decodes a lower- or upper-case hex HMAC-SHA256 signature.
+     * @return The 32 digest bytes, or null if the value is not a well-formed signature.
+     */
+    private static byte[] decodeHex(String hex) {
+        if (hex.length() != HMAC_SHA256_LENGTH * 2) {
+            return null;
+        }
+        byte[] bytes = new byte[HMAC_SHA256_LENGTH];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
             }
-            int result = 0;
-            for (int i = 0; i < digest1.length; i++) {
-                result |= digest1[i] ^ digest2[i];
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    /**
+     * Passes a body through while feeding every byte read to an HMAC.
+     */
+    public static final class VerifyingInputStream extends FilterInputStream {
+
+        private final Mac mac;
+
+        private VerifyingInputStream(InputStream in, Mac mac) {
+            super(in);
+            this.mac = mac;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                mac.update((byte) b);
             }
-            return result == 0;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                mac.update(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes would be missing from the HMAC
+            byte[] discard = new byte[(int) Math.min(n, 8192)];
+            int read = read(discard, 0, discard.length);
+            return Math.max(0, read);
+        }
+
+        /**
+         * Compares the HMAC of everything read so far with a hex X-Signature, in constant time.
+         */
+        public boolean matches(String signature) {
+            byte[] expected = signature == null ? null : decodeHex(signature);
+            return expected != null && MessageDigest.isEqual(mac.doFinal(), expected);
+        }
+    }
+
+    private static class KeyedMac {
+        private final String secret;
+        private final Mac mac;
+
+        private KeyedMac(String secret, Mac mac) {
+            this.secret = secret;
+            this.mac = mac;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,194 @@
+package com.example.streamsplunkwebhook.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary record stored in the queue for each accepted webhook. It holds the header fields
+ * followed by the raw request body, which is never parsed into a tree:
+ *
+ * <pre>
+ *   byte    version (0x01)
+ *   int64   ingest timestamp, epoch milliseconds
+ *   uint16  length of X-Webhook-Id, then its UTF-8 bytes
+ *   uint16  length of X-Api-Key, then its UTF-8 bytes
+ *   int32   length of the raw body, then the body bytes
+ * </pre>
+ *
+ * All integers are big-endian. A decoded envelope is a view over the backing array; the payload
+ * is exposed as an offset/length pair so it can be copied straight into a HEC request body.
+ */
+public final class WebhookEnvelope {
+
+    public static final byte VERSION = 0x01;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int FIXED_HEADER_BYTES = 1 + 8 + 2 + 2 + 4;
+
+    private final byte[] data;
+    private final long timestampMillis;
+    private final String webhookId;
+    private final int apiKeyOffset;
+    private final int apiKeyLength;
+    private final int payloadOffset;
+    private final int payloadLength;
+
+    private WebhookEnvelope(byte[] data, long timestampMillis, String webhookId,
+                            int apiKeyOffset, int apiKeyLength, int payloadOffset, int payloadLength) {
+        this.data = data;
+        this.timestampMillis = timestampMillis;
+        this.webhookId = webhookId;
+        this.apiKeyOffset = apiKeyOffset;
+        this.apiKeyLength = apiKeyLength;
+        this.payloadOffset = payloadOffset;
+        this.payloadLength = payloadLength;
+    }
+
+    /**
+     * Builds the encoded envelope for a webhook. The body bytes are copied once and not inspected.
+     */
+    public static byte[] encode(long timestampMillis, String webhookId, String apiKey, byte[] rawBody) {
+        byte[] id = webhookId.getBytes(StandardCharsets.UTF_8);
+        byte[] key = apiKey.getBytes(StandardCharsets.UTF_8);
+        if (id.length > 0xFFFF || key.length > 0xFFFF) {
+            throw new IllegalArgumentException("Webhook ID or API key too long for envelope header");
+        }
+
+        byte[] out = new byte[FIXED_HEADER_BYTES + id.length + key.length + rawBody.length];
+        int pos = 0;
+        out[pos++] = VERSION;
+        pos = putLong(out, pos, timestampMillis);
+        pos = putShort(out, pos, id.length);
+        System.arraycopy(id, 0, out, pos, id.length);
+        pos += id.length;
+        pos = putShort(out, pos, key.length);
+        System.arraycopy(key, 0, out, pos, key.length);
+        pos += key.length;
+        pos = putInt(out, pos, rawBody.length);
+        System.arraycopy(rawBody, 0, out, pos, rawBody.length);
+        return out;
+    }
+
+    /**
+     * Decodes the header of an envelope without touching the payload bytes. Items written by
+     * earlier releases as JSON documents ({"timestamp":..,"x_webhook_id":..,"original_payload":..})
+     * are still accepted and converted on the fly.
+     */
+    public static WebhookEnvelope decode(byte[] data) throws IOException {
+        if (data.length > 0 && data[0] == '{') {
+            return decodeLegacyJson(data);
+        }
+        if (data.length < FIXED_HEADER_BYTES || data[0] != VERSION) {
+            throw new IOException("Unrecognized webhook envelope");
+        }
+
+        int pos = 1;
+        long timestampMillis = getLong(data, pos);
+        pos += 8;
+        int idLength = getShort(data, pos);
+        pos += 2;
+        checkBounds(data, pos, idLength);
+        String webhookId = new String(data, pos, idLength, StandardCharsets.UTF_8);
+        pos += idLength;
+        checkBounds(data, pos, 2);
+        int keyLength = getShort(data, pos);
+        pos += 2;
+        checkBounds(data, pos, keyLength);
+        int keyOffset = pos;
+        pos += keyLength;
+        checkBounds(data, pos, 4);
+        int payloadLength = getInt(data, pos);
+        pos += 4;
+        checkBounds(data, pos, payloadLength);
+        return new WebhookEnvelope(data, timestampMillis, webhookId, keyOffset, keyLength, pos, payloadLength);
+    }
+
+    private static WebhookEnvelope decodeLegacyJson(byte[] data) throws IOException {
+        JsonNode legacy = objectMapper.readTree(data);
+        byte[] encoded = encode(legacy.path("timestamp").asLong() * 1000,
+                legacy.path("x_webhook_id").asText(),
+                legacy.path("x_api_key").asText(),
+                objectMapper.writeValueAsBytes(legacy.path("original_payload")));
+        return decode(encoded);
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public String getWebhookId() {
+        return webhookId;
+    }
+
+    public int getApiKeyOffset() {
+        return apiKeyOffset;
+    }
+
+    public int getApiKeyLength() {
+        return apiKeyLength;
+    }
+
+    public String getApiKey() {
+        return new String(data, apiKeyOffset, apiKeyLength, StandardCharsets.UTF_8);
+    }
+
+    public int getPayloadOffset() {
+        return payloadOffset;
+    }
+
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    private static void checkBounds(byte[] data, int offset, int length) throws IOException {
+        // Compared as data.length - offset, which cannot overflow the way offset + length can
+        if (length < 0 || length > data.length - offset) {
+            throw new IOException("Truncated webhook envelope");
+        }
+    }
+
+    private static int putLong(byte[] out, int pos, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out[pos++] = (byte) (value >>> shift);
+        }
+        return pos;
+    }
+
+    private static int putInt(byte[] out, int pos, int value) {
+        out[pos++] = (byte) (value >>> 24);
+        out[pos++] = (byte) (value >>> 16);
+        out[pos++] = (byte) (value >>> 8);
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static int putShort(byte[] out, int pos, int value) {
+        out[pos++] = (byte) (value >>> 8);
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long getLong(byte[] data, int pos) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[pos + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int getInt(byte[] data, int pos) {
+        return ((data[pos] & 0xFF) << 24) | ((data[pos + 1] & 0xFF) << 16)
+                | ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+    }
+
+    private static int getShort(byte[] data, int pos) {
+        return ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.streamsplunkwebhook.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_DURATION_MS = 50;
+
+    private final CircuitBreaker breaker = new CircuitBreaker(3, OPEN_DURATION_MS);
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        fail(2);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+
+        fail(1);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.remainingOpenMillis()).isBetween(1L, OPEN_DURATION_MS);
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        fail(2);
+        breaker.onSuccess();
+        fail(2);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.getConsecutiveFailures()).isEqualTo(2);
+    }
+
+    @Test
+    void letsOneProbeThroughOnceTheOpenDurationHasPassed() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_DURATION_MS + 10);
+
+        assertThat(breaker.remainingOpenMillis()).isZero();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void successfulProbeClosesTheCircuit() throws InterruptedException {
+        probe();
+
+        breaker.onSuccess();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.getConsecutiveFailures()).isZero();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    void failedProbeOpensTheCircuitAgain() throws InterruptedException {
+        probe();
+
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.remainingOpenMillis()).isPositive();
+    }
+
+    @Test
+    void abandonedProbeFreesTheSlotForAnother() throws InterruptedException {
+        probe();
+
+        breaker.onAbandoned();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void abandonedRequestsLeaveOtherStatesAlone() {
+        fail(2);
+        breaker.onAbandoned();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.getConsecutiveFailures()).isEqualTo(2);
+
+        fail(1);
+        breaker.onAbandoned();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertThat(breaker.tryAcquirePermission()).isTrue();
+            breaker.onFailure();
+        }
+    }
+
+    private void open() {
+        fail(3);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void probe() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_DURATION_MS + 10);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+}
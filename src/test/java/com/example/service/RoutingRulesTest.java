@@ -0,0 +1,153 @@
+package com.example.streamsplunkwebhook.service;
+
+import com.example.streamsplunkwebhook.util.WebhookEnvelope;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RoutingRulesTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Route DEFAULTS = new Route("stream", "stream-webhook", "stream:chat", null);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void firstMatchingRuleDecides() throws IOException {
+        RoutingRules rules = compile("{\"rules\":["
+                + "{\"name\":\"typing\",\"match\":{\"type\":[\"typing.start\",\"typing.stop\"]},\"action\":\"drop\"},"
+                + "{\"name\":\"team\",\"match\":{\"type\":\"message.*\",\"channel.type\":\"team\"},\"index\":\"team_chat\"},"
+                + "{\"name\":\"messages\",\"match\":{\"type\":\"message.*\"},\"sourcetype\":\"stream:chat:message\"}]}");
+
+        assertThat(route(rules, "{\"type\":\"typing.stop\"}")).isNull();
+        assertThat(route(rules, "{\"type\":\"message.new\",\"channel\":{\"type\":\"team\"}}").getIndex()).isEqualTo("team_chat");
+        Route message = route(rules, "{\"type\":\"message.updated\",\"channel\":{\"type\":\"messaging\"}}");
+        assertThat(message.getSourcetype()).isEqualTo("stream:chat:message");
+        assertThat(message.getIndex()).isNull();
+        assertThat(route(rules, "{\"type\":\"user.updated\"}")).isSameAs(rules.getDefaultRoute());
+    }
+
+    @Test
+    void conditionsNeedTheFieldToBePresent() throws IOException {
+        RoutingRules rules = compile("{\"rules\":[{\"name\":\"any\",\"match\":{\"channel.type\":\"*\"},\"index\":\"channels\"}]}");
+
+        assertThat(route(rules, "{\"channel\":{\"type\":\"livestream\"}}").getIndex()).isEqualTo("channels");
+        assertThat(route(rules, "{\"channel\":{}}")).isSameAs(rules.getDefaultRoute());
+        assertThat(route(rules, "{\"type\":\"message.new\"}")).isSameAs(rules.getDefaultRoute());
+    }
+
+    @Test
+    void matchesNumbersByTheirText() throws IOException {
+        RoutingRules rules = compile("{\"rules\":[{\"name\":\"v2\",\"match\":{\"version\":2},\"index\":\"v2\"}]}");
+
+        assertThat(route(rules, "{\"version\":2}").getIndex()).isEqualTo("v2");
+        assertThat(route(rules, "{\"version\":\"2\"}").getIndex()).isEqualTo("v2");
+        assertThat(route(rules, "{\"version\":3}")).isSameAs(rules.getDefaultRoute());
+    }
+
+    @Test
+    void rulesInheritTheDefaults() throws IOException {
+        RoutingRules rules = compile("{\"defaults\":{\"index\":\"chat\",\"host\":\"edge\"},"
+                + "\"rules\":[{\"name\":\"users\",\"match\":{\"type\":\"user.*\"},\"sourcetype\":\"stream:user\"}]}");
+
+        assertThat(rules.getDefaultRoute().getIndex()).isEqualTo("chat");
+        assertThat(rules.getDefaultRoute().getHost()).isEqualTo("edge");
+        Route users = route(rules, "{\"type\":\"user.updated\"}");
+        assertThat(users.getIndex()).isEqualTo("chat");
+        assertThat(users.getHost()).isEqualTo("edge");
+        assertThat(users.getSource()).isEqualTo("stream-webhook");
+        assertThat(users.getSourcetype()).isEqualTo("stream:user");
+    }
+
+    @Test
+    void withoutRulesEverythingTakesTheDefaultRoute() throws IOException {
+        RoutingRules rules = RoutingRules.compile(null, DEFAULTS, meterRegistry);
+
+        assertThat(rules.size()).isZero();
+        assertThat(route(rules, "not even json")).isSameAs(DEFAULTS);
+    }
+
+    @Test
+    void samplesByWebhookId() throws IOException {
+        RoutingRules rules = compile("{\"rules\":[{\"name\":\"half\",\"match\":{\"type\":\"user.*\"},\"sample\":0.5}]}");
+        String body = "{\"type\":\"user.updated\"}";
+
+        int kept = 0;
+        for (int i = 0; i < 10_000; i++) {
+            Route first = route(rules, "wh-" + i, body);
+            // A redelivered event gets the same decision
+            assertThat(route(rules, "wh-" + i, body)).isSameAs(first);
+            kept += first == null ? 0 : 1;
+        }
+        assertThat(kept).isBetween(4_700, 5_300);
+        assertThat(meterRegistry.get("webhook.routing").tag("rule", "half").tag("result", "sampled_out").counter().count())
+                .isEqualTo(2 * (10_000 - kept));
+    }
+
+    @Test
+    void sampleBoundsKeepAllOrNothing() throws IOException {
+        RoutingRules rules = compile("{\"rules\":["
+                + "{\"name\":\"none\",\"match\":{\"type\":\"typing.*\"},\"sample\":0},"
+                + "{\"name\":\"all\",\"match\":{\"type\":\"user.*\"},\"sample\":1}]}");
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(route(rules, "wh-" + i, "{\"type\":\"typing.start\"}")).isNull();
+            assertThat(route(rules, "wh-" + i, "{\"type\":\"user.updated\"}")).isNotNull();
+        }
+    }
+
+    @Test
+    void countsDecisionsPerRule() throws IOException {
+        RoutingRules rules = compile("{\"rules\":[{\"name\":\"typing\",\"match\":{\"type\":\"typing.*\"},\"action\":\"drop\"}]}");
+
+        route(rules, "{\"type\":\"typing.start\"}");
+        route(rules, "{\"type\":\"message.new\"}");
+        route(rules, "{\"type\":\"message.new\"}");
+
+        assertThat(meterRegistry.get("webhook.routing").tag("rule", "typing").tag("result", "dropped").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("webhook.routing").tag("rule", "default").tag("result", "routed").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void rejectsInvalidDocuments() {
+        assertInvalid("[]", "must be a JSON object");
+        assertInvalid("{\"rules\":{}}", "must be an array");
+        assertInvalid("{\"rules\":[1]}", "must be a JSON object");
+        assertInvalid("{\"rules\":[{\"name\":\"a\"},{\"name\":\"a\"}]}", "Duplicate rule name");
+        assertInvalid("{\"rules\":[{\"action\":\"forward\"}]}", "unknown action");
+        assertInvalid("{\"rules\":[{\"sample\":1.5}]}", "sample must be between 0 and 1");
+        assertInvalid("{\"rules\":[{\"sample\":-0.1}]}", "sample must be between 0 and 1");
+        assertInvalid("{\"rules\":[{\"match\":[]}]}", "\"match\" must be an object");
+        assertInvalid("{\"rules\":[{\"match\":{\"channel..type\":\"x\"}}]}", "invalid field path");
+        assertInvalid("{\"rules\":[{\"match\":{\"type\":{\"a\":1}}}]}", "strings or numbers");
+    }
+
+    private void assertInvalid(String document, String reason) {
+        assertThatThrownBy(() -> compile(document))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(reason);
+    }
+
+    private RoutingRules compile(String document) throws IOException {
+        JsonNode node = objectMapper.readTree(document);
+        return RoutingRules.compile(node, DEFAULTS, meterRegistry);
+    }
+
+    private static Route route(RoutingRules rules, String body) throws IOException {
+        return route(rules, "wh-1", body);
+    }
+
+    private static Route route(RoutingRules rules, String webhookId, String body) throws IOException {
+        byte[] envelope = WebhookEnvelope.encode(0, webhookId, "api-key", body.getBytes(StandardCharsets.UTF_8));
+        return rules.routeFor(WebhookEnvelope.decode(envelope));
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.streamsplunkwebhook.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonEventSplitterTest {
+
+    private static final String TOO_LARGE = "<too large>";
+
+    @Test
+    void splitsJsonArrayIntoElements() throws IOException {
+        assertThat(split(" \r\n[ {\"a\":1} ,\n{\"b\":[1,{\"c\":2}]}\t]\n"))
+                .containsExactly("{\"a\":1}", "{\"b\":[1,{\"c\":2}]}");
+    }
+
+    @Test
+    void emptyBodiesHaveNoEvents() throws IOException {
+        assertThat(split("")).isEmpty();
+        assertThat(split(" \n\t")).isEmpty();
+        assertThat(split("[]")).isEmpty();
+        assertThat(split(" [ \n ] \n")).isEmpty();
+    }
+
+    @Test
+    void splitsScalarArrayElements() throws IOException {
+        assertThat(split("[1, \"two\",true ,null,-4.5e3,[]]"))
+                .containsExactly("1", "\"two\"", "true", "null", "-4.5e3", "[]");
+    }
+
+    @Test
+    void ignoresBracketsAndQuotesInsideStrings() throws IOException {
+        String first = "{\"a\":\"x\\\"}],{\\\\\"}";
+        String second = "{\"b\":\"\\\\\"}";
+        String third = "\"[{,\"";
+        assertThat(split("[" + first + "," + second + "," + third + "]")).containsExactly(first, second, third);
+    }
+
+    @Test
+    void splitsNdjsonOnLineEndings() throws IOException {
+        assertThat(split("{\"a\":1}\n\n{\"b\":2}\r\n  \r\n{\"c\":\"x\\ry\"}"))
+                .containsExactly("{\"a\":1}", "{\"b\":2}", "{\"c\":\"x\\ry\"}");
+    }
+
+    @Test
+    void keepsCarriageReturnsThatDoNotEndALine() throws IOException {
+        assertThat(split("{\"a\":1}\r{\"b\":2}\r\r\n{\"c\":3}\r"))
+                .containsExactly("{\"a\":1}\r{\"b\":2}\r", "{\"c\":3}");
+    }
+
+    @Test
+    void passesBrokenNdjsonLinesThroughUnvalidated() throws IOException {
+        assertThat(split("{\"a\":\n[1,\n")).containsExactly("{\"a\":", "[1,");
+    }
+
+    @Test
+    void dropsBytesOfOversizedEventsButKeepsReading() throws IOException {
+        assertThat(split("[{\"a\":1},{\"long\":\"0123456789\"},{\"b\":2}]", 10, 1000))
+                .containsExactly("{\"a\":1}", TOO_LARGE, "{\"b\":2}");
+        assertThat(split("{\"a\":1}\n{\"long\":\"0123456789\"}\n{\"b\":2}", 10, 1000))
+                .containsExactly("{\"a\":1}", TOO_LARGE, "{\"b\":2}");
+    }
+
+    @Test
+    void eventAtTheSizeLimitIsKept() throws IOException {
+        assertThat(split("[\"12345678\"]", 10, 1000)).containsExactly("\"12345678\"");
+        assertThat(split("[\"123456789\"]", 10, 1000)).containsExactly(TOO_LARGE);
+    }
+
+    @Test
+    void failsOnceTheBodyExceedsItsLimit() throws IOException {
+        String body = "{\"a\":1}\n{\"b\":2}\n";
+        assertThat(split(body, 100, body.length())).hasSize(2);
+        assertThatThrownBy(() -> split(body, 100, body.length() - 1))
+                .isInstanceOf(JsonEventSplitter.BodyTooLargeException.class);
+    }
+
+    @Test
+    void stopsReadingAtTheBodyLimit() {
+        CountingInputStream in = new CountingInputStream(new byte[1 << 20]);
+        JsonEventSplitter splitter = new JsonEventSplitter(in, 100, 20000);
+        assertThatThrownBy(() -> {
+            while (splitter.next() != null) {
+                // Drain
+            }
+        }).isInstanceOf(JsonEventSplitter.BodyTooLargeException.class);
+        assertThat(in.bytesRead).isLessThan(20000 + 8192 + 1);
+    }
+
+    @Test
+    void rejectsBrokenArrays() {
+        assertMalformed("[{\"a\":1}", "unterminated array");
+        assertMalformed("[{\"a\":1} {\"b\":2}]", "expected ',' or ']'");
+        assertMalformed("[1,,2]", "missing event");
+        assertMalformed("[1,]", "missing event");
+        assertMalformed("[{\"a\":1}}]", "expected ',' or ']'");
+        assertMalformed("[1}]", "unbalanced brackets");
+        assertMalformed("[{\"a\":\"]}", "unterminated array");
+        assertMalformed("[1] trailing", "after the closing ']'");
+    }
+
+    @Test
+    void givesTheSameEventsWhenReadOneByteAtATime() throws IOException {
+        String body = "[{\"a\":\"x\\\"]\"}, 2 ,\"s\\\\\",{\"b\":{\"c\":[]}}]";
+        assertThat(split(new TrickleInputStream(bytes(body)), 100, 1000)).isEqualTo(split(body));
+        String lines = "{\"a\":1}\r\n{\"b\":2}\r\n";
+        assertThat(split(new TrickleInputStream(bytes(lines)), 100, 1000)).isEqualTo(split(lines));
+    }
+
+    private static void assertMalformed(String body, String reason) {
+        assertThatThrownBy(() -> split(body))
+                .isInstanceOf(IOException.class)
+                .isNotInstanceOf(JsonEventSplitter.BodyTooLargeException.class)
+                .hasMessageContaining(reason);
+    }
+
+    private static List<String> split(String body) throws IOException {
+        return split(body, 1000, 100000);
+    }
+
+    private static List<String> split(String body, int maxEventBytes, long maxBodyBytes) throws IOException {
+        return split(new ByteArrayInputStream(bytes(body)), maxEventBytes, maxBodyBytes);
+    }
+
+    private static List<String> split(InputStream in, int maxEventBytes, long maxBodyBytes) throws IOException {
+        JsonEventSplitter splitter = new JsonEventSplitter(in, maxEventBytes, maxBodyBytes);
+        List<String> events = new ArrayList<>();
+        JsonEventSplitter.Event event;
+        while ((event = splitter.next()) != null) {
+            events.add(event.isTooLarge() ? TOO_LARGE : new String(event.getBody(), StandardCharsets.UTF_8));
+        }
+        return events;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class CountingInputStream extends ByteArrayInputStream {
+        private long bytesRead;
+
+        private CountingInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            int n = super.read(b, off, len);
+            bytesRead += Math.max(0, n);
+            return n;
+        }
+    }
+
+    // Hands out one byte per read, so every event and escape spans reads
+    private static final class TrickleInputStream extends ByteArrayInputStream {
+        private TrickleInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(1, len));
+        }
+    }
+}
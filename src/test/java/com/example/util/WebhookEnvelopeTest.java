@@ -0,0 +1,114 @@
+package com.example.streamsplunkwebhook.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WebhookEnvelopeTest {
+
+    private static final byte[] BODY = "{\"type\":\"message.new\",\"text\":\"héllo\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void roundTripsHeaderAndBody() throws IOException {
+        byte[] encoded = WebhookEnvelope.encode(1_723_000_000_123L, "wh-ü-1", "api-key", BODY);
+
+        WebhookEnvelope envelope = WebhookEnvelope.decode(encoded);
+
+        assertThat(envelope.getTimestampMillis()).isEqualTo(1_723_000_000_123L);
+        assertThat(envelope.getWebhookId()).isEqualTo("wh-ü-1");
+        assertThat(envelope.getApiKey()).isEqualTo("api-key");
+        assertThat(envelope.getData()).isSameAs(encoded);
+        assertThat(payload(envelope)).isEqualTo(BODY);
+        assertThat(envelope.getPayloadOffset() + envelope.getPayloadLength()).isEqualTo(encoded.length);
+    }
+
+    @Test
+    void roundTripsEmptyFields() throws IOException {
+        WebhookEnvelope envelope = WebhookEnvelope.decode(WebhookEnvelope.encode(0, "", "", new byte[0]));
+
+        assertThat(envelope.getWebhookId()).isEmpty();
+        assertThat(envelope.getApiKey()).isEmpty();
+        assertThat(envelope.getPayloadLength()).isZero();
+    }
+
+    @Test
+    void rejectsHeaderFieldsTooLongForTheirLengthPrefix() {
+        String longId = "x".repeat(0x10000);
+        assertThatThrownBy(() -> WebhookEnvelope.encode(0, longId, "key", BODY)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> WebhookEnvelope.encode(0, "id", longId, BODY)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void decodesLegacyJsonItems() throws IOException {
+        byte[] legacy = ("{\"timestamp\":1723000000,\"x_webhook_id\":\"wh-1\",\"x_api_key\":\"api-key\","
+                + "\"original_payload\":{\"type\":\"message.new\",\"n\":[1,2]}}").getBytes(StandardCharsets.UTF_8);
+
+        WebhookEnvelope envelope = WebhookEnvelope.decode(legacy);
+
+        assertThat(envelope.getTimestampMillis()).isEqualTo(1_723_000_000_000L);
+        assertThat(envelope.getWebhookId()).isEqualTo("wh-1");
+        assertThat(envelope.getApiKey()).isEqualTo("api-key");
+        assertThat(new String(payload(envelope), StandardCharsets.UTF_8)).isEqualTo("{\"type\":\"message.new\",\"n\":[1,2]}");
+    }
+
+    @Test
+    void rejectsMalformedLegacyJson() {
+        assertThatThrownBy(() -> WebhookEnvelope.decode("{\"timestamp\":".getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void rejectsUnknownVersions() {
+        byte[] encoded = WebhookEnvelope.encode(0, "id", "key", BODY);
+        encoded[0] = 0x02;
+
+        assertThatThrownBy(() -> WebhookEnvelope.decode(encoded))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Unrecognized");
+        assertThatThrownBy(() -> WebhookEnvelope.decode(new byte[0])).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        byte[] encoded = WebhookEnvelope.encode(0, "id", "key", BODY);
+        for (int length = 0; length < encoded.length; length++) {
+            byte[] truncated = Arrays.copyOf(encoded, length);
+            assertThatThrownBy(() -> WebhookEnvelope.decode(truncated))
+                    .as("envelope truncated to %d of %d bytes", length, encoded.length)
+                    .isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void rejectsLengthFieldsPastTheEnd() {
+        byte[] encoded = WebhookEnvelope.encode(0, "id", "key", BODY);
+        int payloadLengthOffset = encoded.length - BODY.length - 4;
+
+        for (int length : new int[] {BODY.length + 1, Integer.MAX_VALUE, -1}) {
+            byte[] corrupt = encoded.clone();
+            corrupt[payloadLengthOffset] = (byte) (length >>> 24);
+            corrupt[payloadLengthOffset + 1] = (byte) (length >>> 16);
+            corrupt[payloadLengthOffset + 2] = (byte) (length >>> 8);
+            corrupt[payloadLengthOffset + 3] = (byte) length;
+            assertThatThrownBy(() -> WebhookEnvelope.decode(corrupt))
+                    .as("payload length %d", length)
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("Truncated");
+        }
+
+        byte[] corruptId = encoded.clone();
+        corruptId[9] = (byte) 0xFF;
+        corruptId[10] = (byte) 0xFF;
+        assertThatThrownBy(() -> WebhookEnvelope.decode(corruptId)).isInstanceOf(IOException.class);
+    }
+
+    private static byte[] payload(WebhookEnvelope envelope) {
+        return Arrays.copyOfRange(envelope.getData(), envelope.getPayloadOffset(),
+                envelope.getPayloadOffset() + envelope.getPayloadLength());
+    }
+}